@@ -0,0 +1,24 @@
+package com.example.android.quakereport;
+
+import android.util.Log;
+
+/**
+ * {@link AndroidLogger} forwards the quakereport-core log messages to {@link Log}
+ */
+public class AndroidLogger implements Logger {
+
+    @Override
+    public void v(String tag, String msg) {
+        Log.v(tag, msg);
+    }
+
+    @Override
+    public void w(String tag, String msg) {
+        Log.w(tag, msg);
+    }
+
+    @Override
+    public void e(String tag, String msg, Throwable tr) {
+        Log.e(tag, msg, tr);
+    }
+}
@@ -44,7 +44,6 @@ import androidx.loader.app.LoaderManager.LoaderCallbacks;
 
 import androidx.loader.content.Loader;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class EarthquakeActivity extends AppCompatActivity
@@ -56,14 +55,23 @@ public class EarthquakeActivity extends AppCompatActivity
      * Adapter for the list of earthquakes
      */
     private EarthquakeAdapter mAdapter;
-    private static final String USGS_REQUEST_URL =
-            "https://earthquake.usgs.gov/fdsnws/event/1/query";
     /**
      * Constant value for the earthquake loader ID. We can choose any integer.
      * This really only comes into play if you're using multiple loaders.
      */
     private static final int EARTHQUAKE_LOADER_ID = 1;
 
+    /**
+     * Loader argument telling to skip the prefetched results, set when the user refreshes
+     */
+    private static final String ARG_FORCE_REFRESH = "force_refresh";
+
+    /**
+     * Key of the saved instance state holding the request URL of the shown list, only present
+     * if the loader has cached its result
+     */
+    private static final String STATE_SHOWN_URL = "shown_url";
+
     private TextView mEmptyView;
     private TextView mNoInternetView;
     private ImageView mRefreshView;
@@ -71,6 +79,11 @@ public class EarthquakeActivity extends AppCompatActivity
     private boolean noInternet = false;
     private boolean hasEarthquakes = false;
 
+    /**
+     * Request URL of the shown list
+     */
+    private String mShownUrl;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -98,8 +111,8 @@ public class EarthquakeActivity extends AppCompatActivity
             }
         });
 
-        // Create a new adapter that takes an empty list of earthquakes as input
-        mAdapter = new EarthquakeAdapter(this, new ArrayList<Earthquake>());
+        // Create a new adapter that starts with an empty list of earthquakes
+        mAdapter = new EarthquakeAdapter(this, null);
 
         // Set the adapter on the {@link ListView}
         // so the list can be populated in the user interface
@@ -128,6 +141,24 @@ public class EarthquakeActivity extends AppCompatActivity
             }
         });
 
+        // If the process was killed while the list was shown, restore it from the cache
+        // instead of showing an empty list, unless the settings have changed since
+        String requestUrl = buildRequestUrl();
+        if (savedInstanceState != null
+                && requestUrl.equals(savedInstanceState.getString(STATE_SHOWN_URL))
+                && getSupportLoaderManager().getLoader(EARTHQUAKE_LOADER_ID) == null
+                && restoreCachedList(requestUrl)) {
+            hideLoadingSpinner();
+            hideNoInternetText();
+            showRefreshView();
+            // The cached list may be of any age, so the loader replaces it once loaded. It
+            // reuses the cached result without querying USGS while that is fresh enough.
+            if (isOnline(this)) {
+                getSupportLoaderManager().initLoader(EARTHQUAKE_LOADER_ID, null, this);
+            }
+            return;
+        }
+
         // Check if device has internet connection
         noInternet = !isOnline(this);
         if (noInternet) {
@@ -163,6 +194,12 @@ public class EarthquakeActivity extends AppCompatActivity
         Log.v(LOG_TAG, "TEST: onCreateLoader");
         hideRefreshView();
 
+        boolean forceRefresh = args != null && args.getBoolean(ARG_FORCE_REFRESH);
+        return new EarthquakeLoader(EarthquakeActivity.this, buildRequestUrl(), forceRefresh);
+    }
+
+    // Build the request URL from the current settings
+    private String buildRequestUrl() {
         SharedPreferences sharedPreferences =
                 PreferenceManager.getDefaultSharedPreferences(this);
         String minMagnitude = sharedPreferences.getString(
@@ -172,15 +209,8 @@ public class EarthquakeActivity extends AppCompatActivity
                 getString(R.string.settings_order_by_key),
                 getString(R.string.settings_order_by_default));
 
-        Uri baseUri = Uri.parse(USGS_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-        uriBuilder.appendQueryParameter("format", "geojson");
-        uriBuilder.appendQueryParameter("eventtype", "earthquake");
-        uriBuilder.appendQueryParameter("limit", "10");
-        uriBuilder.appendQueryParameter("minmag", minMagnitude);
-        uriBuilder.appendQueryParameter("orderby", orderBy);
-
-        return new EarthquakeLoader(EarthquakeActivity.this, uriBuilder.toString());
+        return UsgsQueryBuilder.buildEarthquakeQuery(
+                UsgsQueryBuilder.USGS_REQUEST_URL, minMagnitude, orderBy);
     }
 
     @Override
@@ -199,13 +229,15 @@ public class EarthquakeActivity extends AppCompatActivity
         hideLoadingSpinner();
 
         // Clear the adapter of previous earthquake data
-        mAdapter.clear();
+        mAdapter.setEarthquakes(null);
 
         // If there is a valid list of {@link Earthquake}s, then add them to the adapter's
         // data set. This will trigger the ListView to update.
         hasEarthquakes = earthquakes != null && !earthquakes.isEmpty();
         if (hasEarthquakes) {
-            mAdapter.addAll(earthquakes);
+            // Show the query view itself, so that revisions merged into the store reach the list
+            mAdapter.setEarthquakes(earthquakes);
+            mShownUrl = ((EarthquakeLoader) loader).getUrl();
         } else {
             setEmptyViewText();
         }
@@ -215,11 +247,37 @@ public class EarthquakeActivity extends AppCompatActivity
     @Override
     public void onLoaderReset(@NonNull Loader<List<Earthquake>> loader) {
         Log.v(LOG_TAG, "TEST: onLoaderReset");
-        mAdapter.clear();
+        mAdapter.setEarthquakes(null);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // Only point to the cache once it holds a result of the shown query
+        if (hasEarthquakes && mShownUrl != null
+                && QuakeReportApplication.getPrefetcher(this).isCached(mShownUrl)) {
+            outState.putString(STATE_SHOWN_URL, mShownUrl);
+        }
+    }
+
+    // Fill the adapter from the cached result of the query, return false if there is nothing
+    // to show. The result is small and memory-mapped, so it is read on the UI thread to avoid
+    // showing an empty list first.
+    private boolean restoreCachedList(String requestUrl) {
+        List<Earthquake> earthquakes =
+                QuakeReportApplication.getPrefetcher(this).getCached(requestUrl);
+        if (earthquakes == null || earthquakes.isEmpty()) {
+            return false;
+        }
+        mShownUrl = requestUrl;
+        hasEarthquakes = true;
+        mAdapter.setEarthquakes(earthquakes);
+        return true;
     }
 
     private void initLoader(boolean isRestart) {
-        mAdapter.clear();
+        mAdapter.setEarthquakes(null);
+        mShownUrl = null;
         noInternet = !isOnline(EarthquakeActivity.this);
         if (noInternet) {
             showNoInternetText();
@@ -231,7 +289,9 @@ public class EarthquakeActivity extends AppCompatActivity
         Log.v(LOG_TAG, "initLoader");
         // Prepare the loader. Either re-connect with an existing one, or start a new one.
         if (isRestart) {
-            loaderManager.restartLoader(EARTHQUAKE_LOADER_ID, null, EarthquakeActivity.this);
+            Bundle args = new Bundle();
+            args.putBoolean(ARG_FORCE_REFRESH, true);
+            loaderManager.restartLoader(EARTHQUAKE_LOADER_ID, args, EarthquakeActivity.this);
             return;
         }
         loaderManager.initLoader(EARTHQUAKE_LOADER_ID, null, EarthquakeActivity.this);
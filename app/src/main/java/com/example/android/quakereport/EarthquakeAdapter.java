@@ -1,30 +1,71 @@
 package com.example.android.quakereport;
 
 import android.content.Context;
-import android.graphics.drawable.GradientDrawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.content.ContextCompat;
 
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
-public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
-    private String distanceFromPlace = getContext().getString(R.string.near_the);
+public class EarthquakeAdapter extends BaseAdapter {
+    private final Context mContext;
+    private String distanceFromPlace;
     private String nameOfPlace;
     private static final String LOCATION_SEPARATOR = " of ";
 
+    /**
+     * Shown list, used as is rather than copied, so that a {@link EarthquakeStore.QueryView}
+     * shows the latest revision of each event whenever a row is bound
+     */
+    private List<Earthquake> mEarthquakes;
+
+    /**
+     * Colors and circles of the magnitude buckets, resolved once for the adapter
+     */
+    private final MagnitudePalette mMagnitudePalette;
+
     public EarthquakeAdapter(@NonNull Context context, List<Earthquake> earthquakes) {
-        super(context, 0, earthquakes);
+        mContext = context;
+        distanceFromPlace = context.getString(R.string.near_the);
+        mMagnitudePalette = new MagnitudePalette(context);
+        setEarthquakes(earthquakes);
+    }
+
+    /**
+     * Show the given list, or an empty one if it is null.
+     */
+    public void setEarthquakes(@Nullable List<Earthquake> earthquakes) {
+        mEarthquakes = earthquakes != null ? earthquakes : Collections.<Earthquake>emptyList();
+        notifyDataSetChanged();
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    @Override
+    public int getCount() {
+        return mEarthquakes.size();
+    }
+
+    @Override
+    public Earthquake getItem(int position) {
+        return mEarthquakes.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
     }
 
     @NonNull
@@ -43,15 +84,14 @@ public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
         TextView magnitudeTextView = listItemView.findViewById(R.id.magnitude_text_view);
         magnitudeTextView.setText(formatMagnitude(currentEarthquake.getMagnitude()));
 
-        // Set the proper background color on the magnitude circle.
-        // Fetch the background from the TextView, which is a GradientDrawable.
-        GradientDrawable magnitudeCircle = (GradientDrawable) magnitudeTextView.getBackground();
-
-        // Get the appropriate background color based on the current earthquake magnitude.
-        int magnitudeColor = getMagnitudeColor(currentEarthquake.getMagnitude());
-
-        // Set the color on the magnitude circle.
-        magnitudeCircle.setColor(magnitudeColor);
+        // Set the magnitude circle of the earthquake's magnitude bucket. The bucket is kept
+        // in the view's tag, so a recycled view only gets a new circle when it changes.
+        int magnitudeBucket = MagnitudePalette.getBucket(currentEarthquake.getMagnitude());
+        Object boundBucket = magnitudeTextView.getTag();
+        if (boundBucket == null || (Integer) boundBucket != magnitudeBucket) {
+            magnitudeTextView.setBackground(mMagnitudePalette.newCircle(magnitudeBucket));
+            magnitudeTextView.setTag(magnitudeBucket);
+        }
 
         // Split string of place to 2 parts
         splitPlaceText(currentEarthquake);
@@ -76,50 +116,6 @@ public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
         return listItemView;
     }
 
-    /**
-     * Return the color for the magnitude circle based on the intensity of the earthquake.
-     *
-     * @param magnitude of the earthquake
-     */
-    private int getMagnitudeColor(float magnitude) {
-        int magnitudeColorResourceId;
-        int magnitudeFloor = (int) Math.floor(magnitude);
-        switch (magnitudeFloor) {
-            case 0:
-            case 1:
-                magnitudeColorResourceId = R.color.magnitude1;
-                break;
-            case 2:
-                magnitudeColorResourceId = R.color.magnitude2;
-                break;
-            case 3:
-                magnitudeColorResourceId = R.color.magnitude3;
-                break;
-            case 4:
-                magnitudeColorResourceId = R.color.magnitude4;
-                break;
-            case 5:
-                magnitudeColorResourceId = R.color.magnitude5;
-                break;
-            case 6:
-                magnitudeColorResourceId = R.color.magnitude6;
-                break;
-            case 7:
-                magnitudeColorResourceId = R.color.magnitude7;
-                break;
-            case 8:
-                magnitudeColorResourceId = R.color.magnitude8;
-                break;
-            case 9:
-                magnitudeColorResourceId = R.color.magnitude9;
-                break;
-            default:
-                magnitudeColorResourceId = R.color.magnitude10plus;
-                break;
-        }
-        return ContextCompat.getColor(getContext(), magnitudeColorResourceId);
-    }
-
     /**
      * Split string of the place to two part: location asset and name of place.
      */
@@ -8,20 +8,65 @@ import androidx.annotation.Nullable;
 import androidx.loader.content.AsyncTaskLoader;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class EarthquakeLoader extends AsyncTaskLoader<List<Earthquake>> {
     private String mUrl;
+    private boolean mForceRefresh;
     public static final String LOG_TAG = EarthquakeLoader.class.getName();
 
-    public EarthquakeLoader(Context context, String url) {
+    /**
+     * Store shared by every query, so that events returned by several queries are kept once.
+     * It drops the events of the results no longer held by any loader as it grows.
+     */
+    private static final EarthquakeStore sEarthquakeStore = new EarthquakeStore();
+
+    /**
+     * Executor caching the fetched results, so that the result is delivered without waiting
+     * for the disk
+     */
+    private static final Executor sCacheExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Result of the last load, delivered again when the activity is recreated
+     */
+    private List<Earthquake> mEarthquakes;
+
+    /**
+     * Constructs a new {@link EarthquakeLoader} object
+     *
+     * @param url          is the request URL
+     * @param forceRefresh is true to query USGS even if a fresh prefetched result exists
+     */
+    public EarthquakeLoader(Context context, String url, boolean forceRefresh) {
         super(context);
         mUrl = url;
+        mForceRefresh = forceRefresh;
+    }
+
+    /**
+     * Return the request URL of this loader
+     */
+    public String getUrl() {
+        return mUrl;
     }
 
     @Override
     protected void onStartLoading() {
         Log.v(LOG_TAG, "TEST: onStartLoading");
-        forceLoad();
+        if (mEarthquakes != null) {
+            // Don't query USGS again after a configuration change
+            deliverResult(mEarthquakes);
+        } else {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(@Nullable List<Earthquake> earthquakes) {
+        mEarthquakes = earthquakes;
+        super.deliverResult(earthquakes);
     }
 
     @Nullable
@@ -31,7 +76,23 @@ public class EarthquakeLoader extends AsyncTaskLoader<List<Earthquake>> {
         if (TextUtils.isEmpty(mUrl)) {
             return null;
         }
-        /** Create the list of earthquake from {@link QueryUtils} */
-        return QueryUtils.fetchEarthquakesData(mUrl);
+        // Use the result prefetched in the background when it is fresh enough
+        final Prefetcher prefetcher = QuakeReportApplication.getPrefetcher(getContext());
+        List<Earthquake> earthquakes = mForceRefresh ? null : prefetcher.getFresh(mUrl);
+        if (earthquakes == null) {
+            /** Create the list of earthquake from {@link QueryUtils} */
+            earthquakes = QueryUtils.fetchEarthquakesData(mUrl);
+            if (earthquakes != null) {
+                final String requestUrl = mUrl;
+                final List<Earthquake> fetched = earthquakes;
+                sCacheExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        prefetcher.put(requestUrl, fetched);
+                    }
+                });
+            }
+        }
+        return sEarthquakeStore.merge(earthquakes);
     }
 }
@@ -0,0 +1,66 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * {@link MagnitudePalette} holds the magnitude circle drawables of every magnitude bucket,
+ * resolved once from the theme so that binding a row is an array lookup.
+ */
+public class MagnitudePalette {
+
+    /**
+     * Circle colors indexed by bucket, i.e. the floor of the magnitude capped at 10
+     */
+    private static final int[] MAGNITUDE_COLOR_IDS = {
+            R.color.magnitude1,
+            R.color.magnitude1,
+            R.color.magnitude2,
+            R.color.magnitude3,
+            R.color.magnitude4,
+            R.color.magnitude5,
+            R.color.magnitude6,
+            R.color.magnitude7,
+            R.color.magnitude8,
+            R.color.magnitude9,
+            R.color.magnitude10plus
+    };
+
+    private final Resources mResources;
+
+    /**
+     * Constant state of the circle of each bucket. Every bucket has its own mutated state,
+     * so drawables created from different buckets never share a color.
+     */
+    private final Drawable.ConstantState[] mCircleStates =
+            new Drawable.ConstantState[MAGNITUDE_COLOR_IDS.length];
+
+    public MagnitudePalette(Context context) {
+        mResources = context.getResources();
+        for (int bucket = 0; bucket < MAGNITUDE_COLOR_IDS.length; bucket++) {
+            GradientDrawable circle = (GradientDrawable) ContextCompat.getDrawable(
+                    context, R.drawable.magnitude_circle).mutate();
+            circle.setColor(ContextCompat.getColor(context, MAGNITUDE_COLOR_IDS[bucket]));
+            mCircleStates[bucket] = circle.getConstantState();
+        }
+    }
+
+    /**
+     * Return the bucket of the magnitude: its floor, between 0 and 10.
+     */
+    public static int getBucket(float magnitude) {
+        int magnitudeFloor = (int) Math.floor(magnitude);
+        return Math.max(0, Math.min(magnitudeFloor, MAGNITUDE_COLOR_IDS.length - 1));
+    }
+
+    /**
+     * Return a new magnitude circle of the bucket, sharing the bucket's constant state.
+     */
+    public Drawable newCircle(int bucket) {
+        return mCircleStates[bucket].newDrawable(mResources);
+    }
+}
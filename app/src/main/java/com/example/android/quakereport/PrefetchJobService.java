@@ -0,0 +1,186 @@
+package com.example.android.quakereport;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PrefetchJobService} periodically fetches the queries implied by the settings into
+ * the local cache, so that opening the app rarely has to wait for the network.
+ */
+public class PrefetchJobService extends JobService {
+
+    public static final String LOG_TAG = PrefetchJobService.class.getName();
+
+    /**
+     * Constant value for the prefetch job ID. We can choose any integer.
+     */
+    private static final int PREFETCH_JOB_ID = 1;
+
+    /**
+     * Executor running the syncs, one at a time
+     */
+    private static final ExecutorService sSyncExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Executor scheduling the job, which reads the settings and calls the system service
+     */
+    private static final Executor sScheduleExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Sync of the running job, cancelled when the system stops the job
+     */
+    private Future<?> mSync;
+
+    /**
+     * Schedule the periodic prefetch with the period and constraints from the settings,
+     * unless the same job is already scheduled. This runs in the background, so it can be
+     * called from the main thread.
+     */
+    public static void schedule(Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        sScheduleExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                scheduleNow(applicationContext);
+            }
+        });
+    }
+
+    private static void scheduleNow(Context context) {
+        SharedPreferences sharedPreferences =
+                PreferenceManager.getDefaultSharedPreferences(context);
+        boolean requiresCharging = sharedPreferences.getBoolean(
+                context.getString(R.string.settings_sync_charging_key), false);
+        boolean requiresUnmetered = sharedPreferences.getBoolean(
+                context.getString(R.string.settings_sync_unmetered_key), true);
+        boolean requiresIdle = sharedPreferences.getBoolean(
+                context.getString(R.string.settings_sync_idle_key), false);
+        long periodMillis = getPeriodMillis(context);
+
+        Prefetcher prefetcher = QuakeReportApplication.getPrefetcher(context);
+        prefetcher.setPeriodMillis(periodMillis);
+        prefetcher.setMaxAgeMillis(getMaxAgeMillis(context));
+
+        JobInfo jobInfo = new JobInfo.Builder(PREFETCH_JOB_ID,
+                new ComponentName(context, PrefetchJobService.class))
+                .setPeriodic(periodMillis)
+                .setRequiresCharging(requiresCharging)
+                .setRequiresDeviceIdle(requiresIdle)
+                .setRequiredNetworkType(requiresUnmetered
+                        ? JobInfo.NETWORK_TYPE_UNMETERED : JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true)
+                .build();
+
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        JobInfo pendingJob = jobScheduler.getPendingJob(PREFETCH_JOB_ID);
+        // Scheduling again restarts the period, so only do it when something changed
+        if (pendingJob != null
+                && pendingJob.getIntervalMillis() == jobInfo.getIntervalMillis()
+                && pendingJob.isRequireCharging() == requiresCharging
+                && pendingJob.isRequireDeviceIdle() == requiresIdle
+                && pendingJob.getNetworkType() == jobInfo.getNetworkType()) {
+            return;
+        }
+        Log.v(LOG_TAG, "Scheduling prefetch every " + periodMillis + " ms");
+        jobScheduler.schedule(jobInfo);
+    }
+
+    /**
+     * Return the sync period chosen in the settings in milliseconds.
+     */
+    static long getPeriodMillis(Context context) {
+        SharedPreferences sharedPreferences =
+                PreferenceManager.getDefaultSharedPreferences(context);
+        String periodMinutes = sharedPreferences.getString(
+                context.getString(R.string.settings_sync_period_key),
+                context.getString(R.string.settings_sync_period_default));
+        return TimeUnit.MINUTES.toMillis(Long.parseLong(periodMinutes));
+    }
+
+    /**
+     * Return the maximum age of the prefetched results shown when opening the app, as chosen
+     * in the settings, in milliseconds.
+     */
+    static long getMaxAgeMillis(Context context) {
+        SharedPreferences sharedPreferences =
+                PreferenceManager.getDefaultSharedPreferences(context);
+        String maxAgeMinutes = sharedPreferences.getString(
+                context.getString(R.string.settings_max_age_key),
+                context.getString(R.string.settings_max_age_default));
+        return TimeUnit.MINUTES.toMillis(Long.parseLong(maxAgeMinutes));
+    }
+
+    /**
+     * Return the request URLs implied by the settings: the list as currently ordered first,
+     * then the same list with the other orderings the user can switch to.
+     */
+    static List<String> getPrefetchQueries(Context context) {
+        SharedPreferences sharedPreferences =
+                PreferenceManager.getDefaultSharedPreferences(context);
+        String minMagnitude = sharedPreferences.getString(
+                context.getString(R.string.settings_min_magnitude_key),
+                context.getString(R.string.settings_min_magnitude_default));
+        String orderBy = sharedPreferences.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default));
+
+        List<String> requestUrls = new ArrayList<>();
+        requestUrls.add(UsgsQueryBuilder.buildEarthquakeQuery(
+                UsgsQueryBuilder.USGS_REQUEST_URL, minMagnitude, orderBy));
+        for (String otherOrderBy :
+                context.getResources().getStringArray(R.array.settings_order_by_values)) {
+            if (!otherOrderBy.equals(orderBy)) {
+                requestUrls.add(UsgsQueryBuilder.buildEarthquakeQuery(
+                        UsgsQueryBuilder.USGS_REQUEST_URL, minMagnitude, otherOrderBy));
+            }
+        }
+        return requestUrls;
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        Log.v(LOG_TAG, "onStartJob");
+        final Prefetcher prefetcher = QuakeReportApplication.getPrefetcher(this);
+        final List<String> requestUrls = getPrefetchQueries(this);
+        mSync = sSyncExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                prefetcher.sync(requestUrls);
+                Log.v(LOG_TAG, "Prefetch metrics: " + prefetcher.getMetrics());
+                // A stopped job is rescheduled by the system, so it must not finish too
+                if (!Thread.currentThread().isInterrupted()) {
+                    jobFinished(params, false);
+                }
+            }
+        });
+        // The sync goes on in the background
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        Log.v(LOG_TAG, "onStopJob");
+        // Interrupt the sync, which stops the current request and skips the other queries
+        if (mSync != null) {
+            mSync.cancel(true);
+        }
+        // Try again once the constraints are met, rather than waiting for the next period
+        return true;
+    }
+}
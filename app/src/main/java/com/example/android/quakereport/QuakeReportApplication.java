@@ -0,0 +1,48 @@
+package com.example.android.quakereport;
+
+import android.app.Application;
+import android.content.Context;
+
+import java.io.File;
+
+/**
+ * {@link QuakeReportApplication} sets up the state shared by the whole app
+ */
+public class QuakeReportApplication extends Application {
+
+    /**
+     * Name of the directory in the cache directory holding the prefetched results
+     */
+    private static final String PREFETCH_DIRECTORY_NAME = "prefetch";
+
+    private Prefetcher mPrefetcher;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Route the log messages of quakereport-core to logcat
+        CoreLog.setLogger(new AndroidLogger());
+        // Keep the background prefetch scheduled with the current settings
+        PrefetchJobService.schedule(this);
+    }
+
+    /**
+     * Return the {@link Prefetcher} shared by the background sync and the foreground loads.
+     */
+    public static Prefetcher getPrefetcher(Context context) {
+        return ((QuakeReportApplication) context.getApplicationContext()).getPrefetcher();
+    }
+
+    private synchronized Prefetcher getPrefetcher() {
+        if (mPrefetcher == null) {
+            PrefetchCache cache =
+                    new PrefetchCache(new File(getCacheDir(), PREFETCH_DIRECTORY_NAME));
+            // Share the policy of the foreground loads, so that the timeouts and hedge delay
+            // adapt to every request made to USGS
+            mPrefetcher = new Prefetcher(cache, QueryUtils.getFetchPolicy(), Clock.SYSTEM,
+                    PrefetchJobService.getPeriodMillis(this),
+                    PrefetchJobService.getMaxAgeMillis(this));
+        }
+        return mPrefetcher;
+    }
+}
@@ -33,6 +33,20 @@ public class SettingsActivity extends AppCompatActivity {
                     getString(R.string.settings_order_by_key));
             bindPreferenceSummaryToValue(orderBy);
 
+            Preference syncPeriod = findPreference(
+                    getString(R.string.settings_sync_period_key));
+            bindPreferenceSummaryToValue(syncPeriod);
+
+            Preference maxAge = findPreference(
+                    getString(R.string.settings_max_age_key));
+            bindPreferenceSummaryToValue(maxAge);
+        }
+
+        @Override
+        public void onPause() {
+            super.onPause();
+            // Apply the background sync settings once the user leaves the screen
+            PrefetchJobService.schedule(getActivity());
         }
 
         private void bindPreferenceSummaryToValue(Preference preference) {
@@ -0,0 +1,110 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.graphics.drawable.GradientDrawable;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.appcompat.view.ContextThemeWrapper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link EarthquakeAdapterBindBenchmark} measures the cost of binding rows into recycled
+ * views through {@link EarthquakeAdapter#getView}. It is excluded from the unit tests and runs
+ * with {@code ./gradlew :app:testDebugUnitTest -Pbenchmark}. Robolectric only approximates the
+ * framework, so the numbers are printed for comparison rather than asserted.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EarthquakeAdapterBindBenchmark {
+
+    private static final int ROWS = 500;
+    private static final int RECYCLED_VIEWS = 8;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void bindRecycledViews() {
+        Context context =
+                new ContextThemeWrapper(RuntimeEnvironment.getApplication(), R.style.AppTheme);
+        Random random = new Random(42);
+        // Random magnitudes change the bucket of a recycled view on most binds, equal ones
+        // never do
+        EarthquakeAdapter mixedAdapter =
+                new EarthquakeAdapter(context, newEarthquakes(random, 9));
+        EarthquakeAdapter sameBucketAdapter =
+                new EarthquakeAdapter(context, newEarthquakes(random, 0));
+        FrameLayout parent = new FrameLayout(context);
+
+        long mixedNanos = bind(mixedAdapter, parent);
+        long sameBucketNanos = bind(sameBucketAdapter, parent);
+
+        int binds = ROWS * ITERATIONS;
+        System.out.println(String.format(Locale.US, "getView, mixed buckets: %.2f us/bind",
+                mixedNanos / 1e3 / binds));
+        System.out.println(String.format(Locale.US, "getView, same bucket:   %.2f us/bind",
+                sameBucketNanos / 1e3 / binds));
+    }
+
+    private static List<Earthquake> newEarthquakes(Random random, float magnitudeRange) {
+        List<Earthquake> earthquakes = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            earthquakes.add(new Earthquake(4.5f + random.nextFloat() * magnitudeRange,
+                    "10 km N of Somewhere", 1600000000000L + i * 60000L, null));
+        }
+        return earthquakes;
+    }
+
+    /**
+     * Bind every row of the adapter into a few recycled views, as the list does while scrolled.
+     *
+     * @return the time spent in the measured iterations, in nanoseconds
+     */
+    private static long bind(EarthquakeAdapter adapter, FrameLayout parent) {
+        View[] views = new View[RECYCLED_VIEWS];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = adapter.getView(i, null, parent);
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            bindAll(adapter, views, parent);
+        }
+        long nanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            bindAll(adapter, views, parent);
+            nanos += System.nanoTime() - start;
+        }
+
+        // After all the recycling, a row has the circle of a row bound into a new view
+        for (int i = 0; i < views.length; i++) {
+            int position = adapter.getCount() - views.length + i;
+            assertEquals("position " + position,
+                    getCircleColor(adapter.getView(position, null, parent)),
+                    getCircleColor(views[position % views.length]));
+        }
+        return nanos;
+    }
+
+    private static void bindAll(EarthquakeAdapter adapter, View[] views, FrameLayout parent) {
+        for (int position = 0; position < adapter.getCount(); position++) {
+            adapter.getView(position, views[position % views.length], parent);
+        }
+    }
+
+    private static int getCircleColor(View view) {
+        TextView magnitudeTextView = view.findViewById(R.id.magnitude_text_view);
+        return ((GradientDrawable) magnitudeTextView.getBackground())
+                .getColor().getDefaultColor();
+    }
+}
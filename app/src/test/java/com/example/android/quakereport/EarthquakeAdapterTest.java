@@ -0,0 +1,135 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.appcompat.view.ContextThemeWrapper;
+import androidx.core.content.ContextCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+public class EarthquakeAdapterTest {
+
+    private static final List<Earthquake> EARTHQUAKES = Arrays.asList(
+            earthquake(0.4f),
+            earthquake(7.5f),
+            earthquake(7.9f),
+            earthquake(3.0f),
+            earthquake(12.0f),
+            earthquake(1.2f));
+
+    private Context mContext;
+    private EarthquakeAdapter mAdapter;
+    private FrameLayout mParent;
+
+    @Before
+    public void setUp() {
+        mContext = new ContextThemeWrapper(RuntimeEnvironment.getApplication(), R.style.AppTheme);
+        mAdapter = new EarthquakeAdapter(mContext, EARTHQUAKES);
+        mParent = new FrameLayout(mContext);
+    }
+
+    @Test
+    public void getView_colorsEveryBucket() {
+        int[] expectedColorIds = {
+                R.color.magnitude1,
+                R.color.magnitude7,
+                R.color.magnitude7,
+                R.color.magnitude3,
+                R.color.magnitude10plus,
+                R.color.magnitude1};
+        for (int position = 0; position < EARTHQUAKES.size(); position++) {
+            View view = mAdapter.getView(position, null, mParent);
+            assertEquals("position " + position,
+                    ContextCompat.getColor(mContext, expectedColorIds[position]),
+                    getCircleColor(view));
+        }
+    }
+
+    @Test
+    public void getView_recolorsRecycledView() {
+        View view = mAdapter.getView(0, null, mParent);
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude1), getCircleColor(view));
+
+        assertSame(view, mAdapter.getView(1, view, mParent));
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude7), getCircleColor(view));
+
+        // Same bucket, the circle is kept
+        Drawable circle = getCircle(view);
+        mAdapter.getView(2, view, mParent);
+        assertSame(circle, getCircle(view));
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude7), getCircleColor(view));
+
+        mAdapter.getView(3, view, mParent);
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude3), getCircleColor(view));
+    }
+
+    @Test
+    public void getView_doesNotShareCirclesBetweenViews() {
+        // Two rows of the same bucket, then one of them recycled for another bucket
+        View first = mAdapter.getView(1, null, mParent);
+        View second = mAdapter.getView(2, null, mParent);
+        assertNotSame(getCircle(first), getCircle(second));
+
+        mAdapter.getView(3, first, mParent);
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude3), getCircleColor(first));
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude7), getCircleColor(second));
+
+        // A view scrolled through every row ends up with the color of the last one only
+        for (int round = 0; round < 3; round++) {
+            for (int position = 0; position < EARTHQUAKES.size(); position++) {
+                mAdapter.getView(position, first, mParent);
+            }
+        }
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude1), getCircleColor(first));
+        assertEquals(ContextCompat.getColor(mContext, R.color.magnitude7), getCircleColor(second));
+    }
+
+    @Test
+    public void getView_showsRevisionsMergedIntoTheStore() {
+        EarthquakeStore store = new EarthquakeStore();
+        EarthquakeStore.QueryView view = store.merge(Arrays.asList(
+                new Earthquake("us1", 4.2f, "10 km N of Somewhere", 1600000000000L,
+                        "https://earthquake.usgs.gov/earthquakes/eventpage/us1", 1600000000000L)));
+        mAdapter.setEarthquakes(view);
+
+        store.merge(Arrays.asList(
+                new Earthquake("us1", 4.6f, "10 km N of Somewhere", 1600000000000L,
+                        "https://earthquake.usgs.gov/earthquakes/eventpage/us1", 1600000060000L)));
+
+        assertEquals(1, mAdapter.getCount());
+        View row = mAdapter.getView(0, null, mParent);
+        TextView magnitudeTextView = row.findViewById(R.id.magnitude_text_view);
+        assertEquals("4.6", magnitudeTextView.getText().toString());
+    }
+
+    private static Drawable getCircle(View view) {
+        TextView magnitudeTextView = view.findViewById(R.id.magnitude_text_view);
+        return magnitudeTextView.getBackground();
+    }
+
+    private static int getCircleColor(View view) {
+        return ((GradientDrawable) getCircle(view)).getColor().getDefaultColor();
+    }
+
+    private static Earthquake earthquake(float magnitude) {
+        return new Earthquake(magnitude, "10 km N of Somewhere", 1600000000000L,
+                "https://earthquake.usgs.gov/earthquakes/eventpage/us1000abcd");
+    }
+}
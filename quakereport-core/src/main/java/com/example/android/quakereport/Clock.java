@@ -0,0 +1,23 @@
+package com.example.android.quakereport;
+
+/**
+ * {@link Clock} provides the current time, so that time-based logic can be driven by a fake
+ * clock in tests.
+ */
+public interface Clock {
+
+    /**
+     * {@link Clock} reading {@link System#currentTimeMillis()}
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Return the current time in the epoch format
+     */
+    long currentTimeMillis();
+}
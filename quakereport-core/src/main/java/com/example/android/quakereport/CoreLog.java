@@ -0,0 +1,56 @@
+package com.example.android.quakereport;
+
+/**
+ * Static entry point for logging inside the quakereport-core library. Messages are
+ * forwarded to the {@link Logger} set with {@link #setLogger(Logger)} and dropped otherwise.
+ */
+public final class CoreLog {
+
+    /**
+     * {@link Logger} which ignores every message
+     */
+    private static final Logger NO_OP_LOGGER = new Logger() {
+        @Override
+        public void v(String tag, String msg) {
+        }
+
+        @Override
+        public void w(String tag, String msg) {
+        }
+
+        @Override
+        public void e(String tag, String msg, Throwable tr) {
+        }
+    };
+
+    private static volatile Logger sLogger = NO_OP_LOGGER;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link CoreLog} object.
+     */
+    private CoreLog() {
+    }
+
+    /**
+     * Set the {@link Logger} receiving the messages, or null to drop them.
+     */
+    public static void setLogger(Logger logger) {
+        sLogger = logger != null ? logger : NO_OP_LOGGER;
+    }
+
+    static void v(String tag, String msg) {
+        sLogger.v(tag, msg);
+    }
+
+    static void w(String tag, String msg) {
+        sLogger.w(tag, msg);
+    }
+
+    static void e(String tag, String msg) {
+        sLogger.e(tag, msg, null);
+    }
+
+    static void e(String tag, String msg, Throwable tr) {
+        sLogger.e(tag, msg, tr);
+    }
+}
@@ -6,6 +6,11 @@ import java.util.Date;
  * {@link Earthquake} represent an earthquake item
  */
 public class Earthquake {
+    /**
+     * USGS id of the event, which stays the same across revisions
+     */
+    private final String mId;
+
     /**
      * The magnitude for the event
      */
@@ -26,18 +31,47 @@ public class Earthquake {
      */
     private final String mUrl;
 
+    /**
+     * Time when the event was most recently updated in the epoch format
+     */
+    private final long mUpdatedInMilliseconds;
+
     /**
      * Constructs a new {@link Earthquake} object
      *
-     * @param magnitude          is the magnitude (size) of the earthquake
-     * @param place              is the city location of the earthquake
-     * @param timeInMilliseconds is the date the earthquake happened
+     * @param id                    is the USGS id of the event
+     * @param magnitude             is the magnitude (size) of the earthquake
+     * @param place                 is the city location of the earthquake
+     * @param timeInMilliseconds    is the date the earthquake happened
+     * @param url                   is the website URL for the earthquake
+     * @param updatedInMilliseconds is the date of the latest revision of the event
      */
-    public Earthquake(float magnitude, String place, long timeInMilliseconds, String url) {
+    public Earthquake(String id, float magnitude, String place, long timeInMilliseconds,
+                      String url, long updatedInMilliseconds) {
+        mId = id;
         mMagnitude = magnitude;
         mPlace = place;
         mTimeInMilliseconds = timeInMilliseconds;
         mUrl = url;
+        mUpdatedInMilliseconds = updatedInMilliseconds;
+    }
+
+    /**
+     * Constructs a new {@link Earthquake} object without id
+     *
+     * @param magnitude          is the magnitude (size) of the earthquake
+     * @param place              is the city location of the earthquake
+     * @param timeInMilliseconds is the date the earthquake happened
+     */
+    public Earthquake(float magnitude, String place, long timeInMilliseconds, String url) {
+        this(null, magnitude, place, timeInMilliseconds, url, timeInMilliseconds);
+    }
+
+    /**
+     * Return USGS id of the event, or null if it is unknown
+     */
+    public String getId() {
+        return mId;
     }
 
     /**
@@ -67,4 +101,11 @@ public class Earthquake {
     public String getUrl() {
         return mUrl;
     }
+
+    /**
+     * Return date and time of the latest revision of the event in the epoch format
+     */
+    public long getUpdatedInMilliseconds() {
+        return mUpdatedInMilliseconds;
+    }
 }
@@ -0,0 +1,314 @@
+package com.example.android.quakereport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helper methods to save a list of {@link Earthquake}s in a compact binary snapshot and to
+ * read it back, e.g. to restore the list after the process was killed.
+ * <p>
+ * Format, version 1. Every integer is a varint, signed ones are zigzag encoded:
+ * <pre>
+ * magic "QKSN" | version byte
+ * string count | for each string: UTF-8 length, UTF-8 bytes
+ * record count | for each record:
+ *     id         string index + 1, 0 for null
+ *     place      string index + 1, 0 for null
+ *     url        0 for null, 1 for {@link #EVENT_PAGE_URL} + id, string index + 2 otherwise
+ *     magnitude  signed, hundredths of magnitude
+ *     time       signed, difference with the time of the previous record
+ *     updated    signed, difference with the time of the record
+ * </pre>
+ */
+public final class EarthquakeSnapshot {
+
+    /**
+     * Version of the format written by {@link #write(List, OutputStream)}
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Event page URL prefix used by USGS, not stored when the URL is the prefix plus the id
+     */
+    static final String EVENT_PAGE_URL = "https://earthquake.usgs.gov/earthquakes/eventpage/";
+
+    private static final byte[] MAGIC = {'Q', 'K', 'S', 'N'};
+
+    private static final float MAGNITUDE_SCALE = 100f;
+
+    /**
+     * Create a private constructor because no one should ever create a
+     * {@link EarthquakeSnapshot} object.
+     */
+    private EarthquakeSnapshot() {
+    }
+
+    /**
+     * Encode the earthquakes and write them to the output with a single write.
+     */
+    public static void write(List<Earthquake> earthquakes, OutputStream output)
+            throws IOException {
+        output.write(encode(earthquakes));
+    }
+
+    /**
+     * Write the earthquakes to the file. The snapshot is written to a temporary file first,
+     * so that a reader never sees a partially written snapshot. It isn't synced to the disk:
+     * a snapshot lost on a power failure fails to decode and is simply fetched again.
+     */
+    public static void write(List<Earthquake> earthquakes, File file) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        FileOutputStream output = new FileOutputStream(temporaryFile);
+        try {
+            write(earthquakes, output);
+        } finally {
+            output.close();
+        }
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            throw new IOException("Unable to rename " + temporaryFile + " to " + file);
+        }
+    }
+
+    /**
+     * Read the snapshot saved in the file with a single memory-mapped read.
+     */
+    public static List<Earthquake> read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Return the snapshot of the earthquakes as a byte array.
+     */
+    public static byte[] encode(List<Earthquake> earthquakes) {
+        // Build the string table first, the records refer to it by index
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Earthquake earthquake : earthquakes) {
+            addString(earthquake.getId(), stringIndexes, strings);
+            addString(earthquake.getPlace(), stringIndexes, strings);
+            if (!isEventPageUrl(earthquake)) {
+                addString(earthquake.getUrl(), stringIndexes, strings);
+            }
+        }
+
+        Encoder encoder = new Encoder(64 + earthquakes.size() * 16);
+        encoder.writeBytes(MAGIC);
+        encoder.writeByte(VERSION);
+
+        encoder.writeVarint(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoder.writeVarint(bytes.length);
+            encoder.writeBytes(bytes);
+        }
+
+        encoder.writeVarint(earthquakes.size());
+        long previousTime = 0;
+        for (Earthquake earthquake : earthquakes) {
+            long time = earthquake.getDateTime().getTime();
+            encoder.writeVarint(getStringReference(earthquake.getId(), stringIndexes));
+            encoder.writeVarint(getStringReference(earthquake.getPlace(), stringIndexes));
+            if (earthquake.getUrl() == null) {
+                encoder.writeVarint(0);
+            } else if (isEventPageUrl(earthquake)) {
+                encoder.writeVarint(1);
+            } else {
+                encoder.writeVarint(1 + getStringReference(earthquake.getUrl(), stringIndexes));
+            }
+            encoder.writeSignedVarint(Math.round(earthquake.getMagnitude() * MAGNITUDE_SCALE));
+            encoder.writeSignedVarint(time - previousTime);
+            encoder.writeSignedVarint(earthquake.getUpdatedInMilliseconds() - time);
+            previousTime = time;
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Return the earthquakes saved in the byte array.
+     */
+    public static List<Earthquake> decode(byte[] snapshot) throws IOException {
+        return decode(ByteBuffer.wrap(snapshot));
+    }
+
+    private static List<Earthquake> decode(ByteBuffer buffer) throws IOException {
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not an earthquake snapshot");
+            }
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+
+            String[] strings = new String[readCount(buffer)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[readCount(buffer)];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int count = readCount(buffer);
+            List<Earthquake> earthquakes = new ArrayList<>(count);
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                String id = getString(strings, readInt(buffer));
+                String place = getString(strings, readInt(buffer));
+                int urlReference = readInt(buffer);
+                String url;
+                if (urlReference == 0) {
+                    url = null;
+                } else if (urlReference == 1) {
+                    url = EVENT_PAGE_URL + id;
+                } else {
+                    url = getString(strings, urlReference - 1);
+                }
+                float magnitude = readSignedVarint(buffer) / MAGNITUDE_SCALE;
+                time += readSignedVarint(buffer);
+                long updated = time + readSignedVarint(buffer);
+                earthquakes.add(new Earthquake(id, magnitude, place, time, url, updated));
+            }
+            return earthquakes;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated earthquake snapshot", e);
+        }
+    }
+
+    private static boolean isEventPageUrl(Earthquake earthquake) {
+        String url = earthquake.getUrl();
+        String id = earthquake.getId();
+        return url != null && id != null && url.length() == EVENT_PAGE_URL.length() + id.length()
+                && url.startsWith(EVENT_PAGE_URL) && url.endsWith(id);
+    }
+
+    private static void addString(String string, Map<String, Integer> stringIndexes,
+                                  List<String> strings) {
+        if (string != null && !stringIndexes.containsKey(string)) {
+            stringIndexes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private static int getStringReference(String string, Map<String, Integer> stringIndexes) {
+        return string == null ? 0 : stringIndexes.get(string) + 1;
+    }
+
+    private static String getString(String[] strings, int reference) throws IOException {
+        if (reference == 0) {
+            return null;
+        }
+        if (reference > strings.length) {
+            throw new IOException("Bad string reference: " + reference);
+        }
+        return strings[reference - 1];
+    }
+
+    /**
+     * Read a count and check that it fits in what is left of the buffer, so that a corrupted
+     * snapshot can't make us allocate a huge array.
+     */
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        int count = readInt(buffer);
+        if (count > buffer.remaining()) {
+            throw new IOException("Bad count in earthquake snapshot: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Read an unsigned varint which must fit in an int, e.g. a count or a string reference.
+     */
+    private static int readInt(ByteBuffer buffer) throws IOException {
+        long value = readVarint(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Varint out of range in earthquake snapshot: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in earthquake snapshot");
+    }
+
+    private static long readSignedVarint(ByteBuffer buffer) throws IOException {
+        long value = readVarint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * {@link Encoder} is a growable byte buffer with varint helpers
+     */
+    private static class Encoder {
+        private byte[] mBytes;
+        private int mLength;
+
+        private Encoder(int capacity) {
+            mBytes = new byte[capacity];
+        }
+
+        private void ensureCapacity(int extra) {
+            if (mLength + extra > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(mBytes.length * 2, mLength + extra));
+            }
+        }
+
+        private void writeByte(int b) {
+            ensureCapacity(1);
+            mBytes[mLength++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, mBytes, mLength, bytes.length);
+            mLength += bytes.length;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                mBytes[mLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            mBytes[mLength++] = (byte) value;
+        }
+
+        private void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(mBytes, mLength);
+        }
+    }
+}
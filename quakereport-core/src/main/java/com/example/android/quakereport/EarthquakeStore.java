@@ -0,0 +1,279 @@
+package com.example.android.quakereport;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@link EarthquakeStore} keeps a single copy of every {@link Earthquake} seen so far, keyed
+ * by USGS event id. Query results merged into the store become {@link QueryView}s, lists of
+ * record indexes, so overlapping queries share the same records and memory grows with the
+ * number of unique events rather than with the number of queries.
+ * <p>
+ * The ids are kept in an open-addressing hash table with linear probing. Once the store has
+ * grown to twice its size after the last compaction, the records no live view refers to are
+ * dropped and the table is rebuilt, so no tombstones are needed. Record indexes returned by
+ * {@link #put(Earthquake)} and {@link #indexOf(String)} are only valid until then.
+ */
+public class EarthquakeStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Hash table from id to record index + 1, 0 marks an empty slot. Its length is a power of
+     * two and it is kept at most half full.
+     */
+    private int[] mTable = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Records, in insertion order. A revision replaces the record at the same index.
+     */
+    private Earthquake[] mRecords = new Earthquake[INITIAL_CAPACITY];
+
+    private int mSize;
+
+    /**
+     * Views handed out by {@link #merge(List)}, weakly referenced so that the records of the
+     * views nobody uses any more can be dropped
+     */
+    private final List<WeakReference<QueryView>> mViews = new ArrayList<>();
+
+    /**
+     * Number of records above which the next merge compacts the store
+     */
+    private int mCompactionThreshold = INITIAL_CAPACITY;
+
+    /**
+     * Number of views above which the next merge drops the references to collected views
+     */
+    private int mPruneThreshold = INITIAL_CAPACITY;
+
+    private int mCompactionCount;
+
+    /**
+     * Merge the given query result into the store and return it as a view on the store.
+     * The cost is proportional to the size of the result, not to the size of the store.
+     *
+     * @param earthquakes is the parsed query result, may be null
+     * @return the view, or null if earthquakes is null
+     */
+    public synchronized QueryView merge(List<Earthquake> earthquakes) {
+        if (earthquakes == null) {
+            return null;
+        }
+        int[] indexes = new int[earthquakes.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = put(earthquakes.get(i));
+        }
+        QueryView view = new QueryView(indexes);
+        mViews.add(new WeakReference<>(view));
+        // Both thresholds double with what is left, so the cost is amortized over the merges
+        if (mSize > mCompactionThreshold) {
+            compact();
+        } else if (mViews.size() > mPruneThreshold) {
+            pruneViews();
+        }
+        return view;
+    }
+
+    /**
+     * Drop the records which no live {@link QueryView} refers to and renumber the others.
+     * The views keep returning the same events.
+     */
+    public synchronized void compact() {
+        pruneViews();
+
+        // Mark the records still in use, then give them their new, dense index + 1
+        int[] newIndexes = new int[mSize];
+        for (WeakReference<QueryView> reference : mViews) {
+            QueryView view = reference.get();
+            if (view != null) {
+                for (int index : view.mIndexes) {
+                    newIndexes[index] = 1;
+                }
+            }
+        }
+        int size = 0;
+        for (int index = 0; index < mSize; index++) {
+            if (newIndexes[index] != 0) {
+                mRecords[size] = mRecords[index];
+                newIndexes[index] = ++size;
+            }
+        }
+        Arrays.fill(mRecords, size, mSize, null);
+        mSize = size;
+
+        for (WeakReference<QueryView> reference : mViews) {
+            QueryView view = reference.get();
+            if (view != null) {
+                int[] indexes = view.mIndexes;
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = newIndexes[indexes[i]] - 1;
+                }
+            }
+        }
+
+        int capacity = INITIAL_CAPACITY * 2;
+        while (mSize * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (mRecords.length > capacity) {
+            mRecords = Arrays.copyOf(mRecords, capacity);
+        }
+        rehash(capacity);
+        mCompactionThreshold = Math.max(INITIAL_CAPACITY, mSize * 2);
+        mCompactionCount++;
+    }
+
+    /**
+     * Return the number of compactions so far
+     */
+    public synchronized int getCompactionCount() {
+        return mCompactionCount;
+    }
+
+    /**
+     * Drop the references to the views which have been garbage collected.
+     */
+    private void pruneViews() {
+        int live = 0;
+        for (int i = 0; i < mViews.size(); i++) {
+            WeakReference<QueryView> reference = mViews.get(i);
+            if (reference.get() != null) {
+                mViews.set(live++, reference);
+            }
+        }
+        mViews.subList(live, mViews.size()).clear();
+        mPruneThreshold = Math.max(INITIAL_CAPACITY, live * 2);
+    }
+
+    /**
+     * Add the earthquake, or replace the stored one with the same id if it is a newer
+     * revision, and return its record index.
+     */
+    public synchronized int put(Earthquake earthquake) {
+        String id = earthquake.getId();
+        if (id == null) {
+            // Without an id the event can't be matched, so it gets its own record.
+            return append(earthquake);
+        }
+
+        int mask = mTable.length - 1;
+        int slot = hash(id) & mask;
+        while (mTable[slot] != 0) {
+            int index = mTable[slot] - 1;
+            Earthquake stored = mRecords[index];
+            if (id.equals(stored.getId())) {
+                if (earthquake.getUpdatedInMilliseconds() > stored.getUpdatedInMilliseconds()) {
+                    mRecords[index] = earthquake;
+                }
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int index = append(earthquake);
+        mTable[slot] = index + 1;
+        if (mSize * 2 > mTable.length) {
+            rehash(mTable.length * 2);
+        }
+        return index;
+    }
+
+    /**
+     * Return the record index of the event with the given id, or -1 if it isn't stored.
+     */
+    public synchronized int indexOf(String id) {
+        int mask = mTable.length - 1;
+        int slot = hash(id) & mask;
+        while (mTable[slot] != 0) {
+            int index = mTable[slot] - 1;
+            if (id.equals(mRecords[index].getId())) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the latest revision of the record at the given index.
+     */
+    public synchronized Earthquake get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        return mRecords[index];
+    }
+
+    /**
+     * Return the number of unique events in the store
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    private int append(Earthquake earthquake) {
+        if (mSize == mRecords.length) {
+            mRecords = Arrays.copyOf(mRecords, mSize * 2);
+        }
+        mRecords[mSize] = earthquake;
+        return mSize++;
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int index = 0; index < mSize; index++) {
+            String id = mRecords[index].getId();
+            if (id == null) {
+                continue;
+            }
+            int slot = hash(id) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+        mTable = table;
+    }
+
+    /**
+     * Spread the bits of the String hash, since linear probing only looks at the low bits.
+     */
+    private static int hash(String id) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * {@link QueryView} is the result of one query: an ordered list of record indexes into
+     * the {@link EarthquakeStore}. It always returns the latest revision of each event.
+     */
+    public class QueryView extends AbstractList<Earthquake> implements RandomAccess {
+        /**
+         * Record indexes, renumbered in place by {@link EarthquakeStore#compact()} under the
+         * store lock
+         */
+        private final int[] mIndexes;
+
+        private QueryView(int[] indexes) {
+            mIndexes = indexes;
+        }
+
+        @Override
+        public Earthquake get(int position) {
+            synchronized (EarthquakeStore.this) {
+                return mRecords[mIndexes[position]];
+            }
+        }
+
+        @Override
+        public int size() {
+            return mIndexes.length;
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package com.example.android.quakereport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link FetchPolicy} performs HTTP GET requests with timeouts that adapt to the observed
+ * latency, bounded retries with jittered exponential backoff and optional hedged requests.
+ * <p>
+ * One instance is meant to be shared by every request to the same endpoint, so that the
+ * latency samples it collects describe that endpoint.
+ */
+public class FetchPolicy {
+
+    /**
+     * Tag for the log messages
+     */
+    public static final String LOG_TAG = FetchPolicy.class.getSimpleName();
+
+    /**
+     * Number of latency samples kept to compute the percentiles
+     */
+    private static final int LATENCY_WINDOW = 64;
+
+    /**
+     * Minimum number of samples before the timeouts and hedge delay start to adapt
+     */
+    private static final int MIN_SAMPLES = 8;
+
+    /**
+     * Initial timeouts, used until enough latency samples are collected
+     */
+    private static final int DEFAULT_CONNECT_TIMEOUT = 15000 /* milliseconds */;
+    private static final int DEFAULT_READ_TIMEOUT = 10000 /* milliseconds */;
+
+    /**
+     * Bounds for the adapted timeouts
+     */
+    private static final int MIN_TIMEOUT = 2000 /* milliseconds */;
+    private static final int MAX_TIMEOUT = 30000 /* milliseconds */;
+
+    /**
+     * The adapted timeout is this many times the p99 latency
+     */
+    private static final int TIMEOUT_MULTIPLIER = 3;
+
+    private final int mMaxRetries;
+    private final long mBaseBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final boolean mHedgingEnabled;
+
+    /**
+     * Ring buffer with the latest request latencies in milliseconds
+     */
+    private final long[] mLatencies = new long[LATENCY_WINDOW];
+    private int mLatencyCount;
+    private int mLatencyNext;
+
+    private final Random mRandom = new Random();
+
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mRetries = new AtomicLong();
+    private final AtomicLong mHedges = new AtomicLong();
+    private final AtomicLong mHedgeWins = new AtomicLong();
+    private final AtomicLong mBytesReceived = new AtomicLong();
+
+    /**
+     * Executor running the hedged attempts, created on first use
+     */
+    private ExecutorService mHedgeExecutor;
+
+    /**
+     * Constructs a new {@link FetchPolicy} object
+     *
+     * @param maxRetries        is the number of retries after the first attempt
+     * @param baseBackoffMillis is the backoff ceiling before the first retry
+     * @param maxBackoffMillis  is the upper bound for any backoff, Retry-After included
+     * @param hedgingEnabled    is true to send a second request when the first one is slower
+     *                          than the observed p95 latency
+     */
+    public FetchPolicy(int maxRetries, long baseBackoffMillis, long maxBackoffMillis,
+                       boolean hedgingEnabled) {
+        mMaxRetries = maxRetries;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mHedgingEnabled = hedgingEnabled;
+    }
+
+    /**
+     * Constructs a new {@link FetchPolicy} object with 3 retries, 500 ms to 8 s of backoff
+     * and no hedging
+     */
+    public FetchPolicy() {
+        this(3, 500, 8000, false);
+    }
+
+    /**
+     * Make an HTTP GET request to the given URL and return the response body, or an empty
+     * String if the request didn't succeed after all the retries. Interrupting the calling
+     * thread stops the request at the next chunk of the body, backoff or attempt.
+     */
+    public String fetch(URL url) {
+        mRequests.incrementAndGet();
+        for (int attempt = 0; ; attempt++) {
+            Response response = mHedgingEnabled ? executeHedged(url) : execute(new Attempt(url));
+            if (response.code == HttpURLConnection.HTTP_OK) {
+                // Only the attempt which answered counts, a cancelled loser would otherwise
+                // push the slow requests hedging hides into the percentiles.
+                recordLatency(response.latencyMillis);
+                return response.body;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                CoreLog.v(LOG_TAG, "Request interrupted");
+                return "";
+            }
+            if (!response.isRetryable() || attempt >= mMaxRetries) {
+                CoreLog.e(LOG_TAG, "Giving up after " + (attempt + 1)
+                        + " attempts, response code: " + response.code);
+                return "";
+            }
+            long backoff = getBackoffMillis(attempt, response.retryAfterMillis);
+            if (backoff < 0) {
+                CoreLog.e(LOG_TAG, "Giving up, the server asked to retry after "
+                        + response.retryAfterMillis + " ms, response code: " + response.code);
+                return "";
+            }
+            mRetries.incrementAndGet();
+            CoreLog.w(LOG_TAG, "Retrying in " + backoff + " ms, response code: "
+                    + response.code);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "";
+            }
+        }
+    }
+
+    /**
+     * Return the delay before the retry following the given attempt. The server's
+     * Retry-After wins when present, otherwise the delay is drawn uniformly between 0 and
+     * the exponential ceiling ("full jitter").
+     *
+     * @return the delay in milliseconds, or -1 if the server asked to wait longer than the
+     * maximum backoff, in which case the request should not be retried
+     */
+    long getBackoffMillis(int attempt, long retryAfterMillis) {
+        if (retryAfterMillis >= 0) {
+            return retryAfterMillis <= mMaxBackoffMillis ? retryAfterMillis : -1;
+        }
+        long ceiling = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << Math.min(attempt, 20));
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * ceiling);
+        }
+    }
+
+    /**
+     * Run the request and, if it hasn't finished within the p95 latency, a second identical
+     * request. The first successful response wins and the other attempt is disconnected.
+     */
+    private Response executeHedged(URL url) {
+        long hedgeDelay = getLatencyPercentile(95);
+        if (hedgeDelay < 0) {
+            return execute(new Attempt(url));
+        }
+
+        CompletionService<Response> completionService =
+                new ExecutorCompletionService<>(getHedgeExecutor());
+        Attempt primaryAttempt = new Attempt(url);
+        Attempt hedgeAttempt = null;
+        Future<Response> primary = completionService.submit(primaryAttempt);
+        Future<Response> hedge = null;
+        try {
+            Future<Response> done = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (done != null) {
+                return done.get();
+            }
+
+            mHedges.incrementAndGet();
+            hedgeAttempt = new Attempt(url);
+            hedge = completionService.submit(hedgeAttempt);
+            done = completionService.take();
+            Response response = done.get();
+            if (response.code != HttpURLConnection.HTTP_OK) {
+                // The first one to finish failed, so give the other one a chance.
+                Response other = completionService.take().get();
+                if (other.code == HttpURLConnection.HTTP_OK) {
+                    done = done == primary ? hedge : primary;
+                    response = other;
+                }
+            }
+            if (done == hedge && response.code == HttpURLConnection.HTTP_OK) {
+                mHedgeWins.incrementAndGet();
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.failed();
+        } catch (ExecutionException e) {
+            CoreLog.e(LOG_TAG, "Problem running the hedged request.", e);
+            return Response.failed();
+        } finally {
+            // Future.cancel can't interrupt a blocking read, so close the connections too
+            primaryAttempt.cancel();
+            primary.cancel(true);
+            if (hedgeAttempt != null) {
+                hedgeAttempt.cancel();
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private synchronized ExecutorService getHedgeExecutor() {
+        if (mHedgeExecutor == null) {
+            mHedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, LOG_TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mHedgeExecutor;
+    }
+
+    /**
+     * Make a single HTTP GET request and return the response with its latency.
+     */
+    private Response execute(Attempt attempt) {
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        long start = System.nanoTime();
+        try {
+            urlConnection = (HttpURLConnection) attempt.mUrl.openConnection();
+            attempt.setConnection(urlConnection);
+            urlConnection.setReadTimeout(getReadTimeout());
+            urlConnection.setConnectTimeout(getConnectTimeout());
+            urlConnection.setRequestMethod("GET");
+            urlConnection.connect();
+
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                return new Response(responseCode, null,
+                        parseRetryAfter(urlConnection.getHeaderField("Retry-After")), -1);
+            }
+            inputStream = urlConnection.getInputStream();
+            String body = readFromStream(inputStream);
+            return new Response(responseCode, body, -1,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            if (attempt.isCancelled()) {
+                CoreLog.v(LOG_TAG, "Hedged attempt cancelled");
+            } else if (e instanceof InterruptedIOException) {
+                CoreLog.v(LOG_TAG, "Attempt interrupted");
+            } else {
+                CoreLog.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
+            }
+            return Response.failed();
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    CoreLog.e(LOG_TAG, "Problem closing the input stream.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert the {@link InputStream} into a String which contains the whole response.
+     *
+     * @throws InterruptedIOException if the thread is interrupted between two chunks
+     */
+    private String readFromStream(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length = inputStream.read(buffer);
+        while (length != -1) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted after " + output.size() + " bytes");
+            }
+            output.write(buffer, 0, length);
+            length = inputStream.read(buffer);
+        }
+        mBytesReceived.addAndGet(output.size());
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the Retry-After header value in milliseconds, or -1 if it is missing or invalid.
+     * The header holds either a number of seconds or an HTTP date. A delay too long for a
+     * long is returned as Long.MAX_VALUE, so that the caller gives up rather than retrying.
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            if (seconds <= 0) {
+                return 0;
+            }
+            return seconds > Long.MAX_VALUE / 1000 ? Long.MAX_VALUE : seconds * 1000;
+        } catch (NumberFormatException e) {
+            if (value.matches("\\d+")) {
+                return Long.MAX_VALUE;
+            }
+            // Not a number of seconds, try an HTTP date below.
+        }
+        SimpleDateFormat format =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        try {
+            Date date = format.parse(value);
+            return Math.max(0, date.getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private synchronized void recordLatency(long millis) {
+        mLatencies[mLatencyNext] = millis;
+        mLatencyNext = (mLatencyNext + 1) % LATENCY_WINDOW;
+        if (mLatencyCount < LATENCY_WINDOW) {
+            mLatencyCount++;
+        }
+    }
+
+    /**
+     * Return the given percentile of the recorded latencies in milliseconds, or -1 if there
+     * are not enough samples yet.
+     */
+    public synchronized long getLatencyPercentile(int percentile) {
+        if (mLatencyCount < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(mLatencies, mLatencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * mLatencyCount) - 1;
+        return sorted[Math.max(0, Math.min(index, mLatencyCount - 1))];
+    }
+
+    /**
+     * Return the connect timeout: a multiple of the p99 latency once there are enough samples.
+     */
+    public int getConnectTimeout() {
+        return getAdaptedTimeout(DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Return the read timeout: a multiple of the p99 latency once there are enough samples.
+     */
+    public int getReadTimeout() {
+        return getAdaptedTimeout(DEFAULT_READ_TIMEOUT);
+    }
+
+    private int getAdaptedTimeout(int defaultTimeout) {
+        long p99 = getLatencyPercentile(99);
+        if (p99 < 0) {
+            return defaultTimeout;
+        }
+        return (int) Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, p99 * TIMEOUT_MULTIPLIER));
+    }
+
+    /**
+     * Return the number of calls to {@link #fetch(URL)}
+     */
+    public long getRequestCount() {
+        return mRequests.get();
+    }
+
+    /**
+     * Return the number of retries made after a failed attempt
+     */
+    public long getRetryCount() {
+        return mRetries.get();
+    }
+
+    /**
+     * Return the number of hedged requests sent
+     */
+    public long getHedgeCount() {
+        return mHedges.get();
+    }
+
+    /**
+     * Return the number of hedged requests which answered before the original one
+     */
+    public long getHedgeWinCount() {
+        return mHedgeWins.get();
+    }
+
+    /**
+     * Return the number of response body bytes received, hedged requests included
+     */
+    public long getBytesReceived() {
+        return mBytesReceived.get();
+    }
+
+    /**
+     * {@link Attempt} is a single request, which another thread can cancel by closing its
+     * connection
+     */
+    private class Attempt implements Callable<Response> {
+        private final URL mUrl;
+        private HttpURLConnection mConnection;
+        private boolean mCancelled;
+
+        private Attempt(URL url) {
+            mUrl = url;
+        }
+
+        @Override
+        public Response call() {
+            return execute(this);
+        }
+
+        private synchronized void setConnection(HttpURLConnection connection) {
+            mConnection = connection;
+            if (mCancelled) {
+                connection.disconnect();
+            }
+        }
+
+        private synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        private synchronized void cancel() {
+            mCancelled = true;
+            if (mConnection != null) {
+                mConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * {@link Response} holds the outcome of a single attempt
+     */
+    private static class Response {
+        /**
+         * Response code used when no HTTP response was received at all
+         */
+        private static final int NO_RESPONSE = -1;
+
+        private final int code;
+        private final String body;
+        private final long retryAfterMillis;
+        private final long latencyMillis;
+
+        private Response(int code, String body, long retryAfterMillis, long latencyMillis) {
+            this.code = code;
+            this.body = body;
+            this.retryAfterMillis = retryAfterMillis;
+            this.latencyMillis = latencyMillis;
+        }
+
+        private static Response failed() {
+            return new Response(NO_RESPONSE, null, -1, -1);
+        }
+
+        /**
+         * Network errors, throttling and server errors are worth another attempt
+         */
+        private boolean isRetryable() {
+            return code == NO_RESPONSE || code == 429 || code >= 500;
+        }
+    }
+}
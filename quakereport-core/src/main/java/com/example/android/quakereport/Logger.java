@@ -0,0 +1,23 @@
+package com.example.android.quakereport;
+
+/**
+ * {@link Logger} receives the log messages of the quakereport-core library, so that each
+ * platform can route them to its own logging system.
+ */
+public interface Logger {
+
+    /**
+     * Send a verbose log message
+     */
+    void v(String tag, String msg);
+
+    /**
+     * Send a warning log message
+     */
+    void w(String tag, String msg);
+
+    /**
+     * Send an error log message and log the exception, if any
+     */
+    void e(String tag, String msg, Throwable tr);
+}
@@ -0,0 +1,227 @@
+package com.example.android.quakereport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * {@link PrefetchCache} stores query results on disk as {@link EarthquakeSnapshot}s, keyed by
+ * request URL, along with the time each one was fetched. It holds at most
+ * {@link #MAX_ENTRIES} results, dropping the oldest ones first.
+ */
+public class PrefetchCache {
+
+    /**
+     * Tag for the log messages
+     */
+    public static final String LOG_TAG = PrefetchCache.class.getSimpleName();
+
+    /**
+     * Name of the file mapping each request URL to its fetch time
+     */
+    private static final String INDEX_FILE_NAME = "index.properties";
+
+    /**
+     * Maximum number of cached results, well above the queries of a single setting
+     */
+    static final int MAX_ENTRIES = 16;
+
+    private final File mDirectory;
+
+    /**
+     * Fetch time of each cached request URL, read from disk on first use
+     */
+    private Properties mIndex;
+
+    /**
+     * Constructs a new {@link PrefetchCache} object. Nothing is read from disk until the
+     * cache is first used.
+     *
+     * @param directory is the directory holding the cached results, created if needed
+     */
+    public PrefetchCache(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Save the result of the request and the time it was fetched.
+     */
+    public synchronized void put(String requestUrl, List<Earthquake> earthquakes,
+                                 long fetchedAtMillis) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+        EarthquakeSnapshot.write(earthquakes, getResultFile(requestUrl));
+        getIndex().setProperty(requestUrl, String.valueOf(fetchedAtMillis));
+        while (getIndex().size() > MAX_ENTRIES) {
+            removeEntry(getOldestRequestUrl());
+        }
+        saveIndex();
+    }
+
+    /**
+     * Remove the results of every request but the given ones, e.g. the queries of settings
+     * the user has since changed.
+     */
+    public synchronized void retainAll(Collection<String> requestUrls) {
+        List<String> removed = new ArrayList<>();
+        for (String requestUrl : getIndex().stringPropertyNames()) {
+            if (!requestUrls.contains(requestUrl)) {
+                removed.add(requestUrl);
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        for (String requestUrl : removed) {
+            removeEntry(requestUrl);
+        }
+        saveIndexQuietly();
+    }
+
+    /**
+     * Return the cached result of the request, or null if there is none.
+     */
+    public synchronized List<Earthquake> get(String requestUrl) {
+        if (getFetchedAt(requestUrl) < 0) {
+            return null;
+        }
+        try {
+            return EarthquakeSnapshot.read(getResultFile(requestUrl));
+        } catch (IOException e) {
+            CoreLog.e(LOG_TAG, "Problem reading a cached result", e);
+            removeEntry(requestUrl);
+            saveIndexQuietly();
+            return null;
+        }
+    }
+
+    /**
+     * Return the time the result of the request was fetched, or -1 if it isn't cached.
+     */
+    public synchronized long getFetchedAt(String requestUrl) {
+        String fetchedAt = getIndex().getProperty(requestUrl);
+        if (fetchedAt == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fetchedAt);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Return the number of cached results
+     */
+    public synchronized int size() {
+        return getIndex().size();
+    }
+
+    /**
+     * Remove the request from the index and delete its result. The caller saves the index.
+     */
+    private void removeEntry(String requestUrl) {
+        getIndex().remove(requestUrl);
+        File resultFile = getResultFile(requestUrl);
+        if (resultFile.exists() && !resultFile.delete()) {
+            CoreLog.w(LOG_TAG, "Unable to delete " + resultFile);
+        }
+    }
+
+    /**
+     * Return the request whose result was fetched first, an unreadable time counting as the
+     * oldest.
+     */
+    private String getOldestRequestUrl() {
+        String oldest = null;
+        long oldestFetchedAt = Long.MAX_VALUE;
+        for (String requestUrl : getIndex().stringPropertyNames()) {
+            long fetchedAt = getFetchedAt(requestUrl);
+            if (oldest == null || fetchedAt < oldestFetchedAt) {
+                oldest = requestUrl;
+                oldestFetchedAt = fetchedAt;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Return the index, loading it from disk on first use. The caller holds the lock.
+     */
+    private Properties getIndex() {
+        if (mIndex != null) {
+            return mIndex;
+        }
+        mIndex = new Properties();
+        File indexFile = new File(mDirectory, INDEX_FILE_NAME);
+        if (indexFile.exists()) {
+            try {
+                InputStream input = new FileInputStream(indexFile);
+                try {
+                    mIndex.load(input);
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                CoreLog.e(LOG_TAG, "Problem reading the prefetch cache index", e);
+                mIndex.clear();
+            }
+        }
+        return mIndex;
+    }
+
+    /**
+     * Save the index after removing entries. If this fails, the index on disk still lists
+     * them, and reading their deleted results simply misses.
+     */
+    private void saveIndexQuietly() {
+        try {
+            saveIndex();
+        } catch (IOException e) {
+            CoreLog.e(LOG_TAG, "Problem saving the prefetch cache index", e);
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        File temporaryFile = new File(mDirectory, INDEX_FILE_NAME + ".tmp");
+        OutputStream output = new FileOutputStream(temporaryFile);
+        try {
+            getIndex().store(output, null);
+        } finally {
+            output.close();
+        }
+        if (!temporaryFile.renameTo(new File(mDirectory, INDEX_FILE_NAME))) {
+            throw new IOException("Unable to save the prefetch cache index");
+        }
+    }
+
+    /**
+     * Return the file holding the result of the request, named after the SHA-1 of its URL.
+     */
+    private File getResultFile(String requestUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(requestUrl.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2 + 9);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(mDirectory, name.append(".snapshot").toString());
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is available on every Java platform.
+            throw new AssertionError(e);
+        }
+    }
+}
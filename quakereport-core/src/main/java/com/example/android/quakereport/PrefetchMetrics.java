@@ -0,0 +1,115 @@
+package com.example.android.quakereport;
+
+/**
+ * {@link PrefetchMetrics} counts what the background syncs cost and how fresh the cached
+ * results are when the app reads them.
+ */
+public class PrefetchMetrics {
+
+    private long mSyncCount;
+    private long mLastSyncLatencyMillis;
+    private long mTotalSyncLatencyMillis;
+    private long mQueriesFetched;
+    private long mBytesTransferred;
+
+    private long mOpenCount;
+    private long mCacheHits;
+    private long mLastFreshnessAtOpenMillis = -1;
+    private long mTotalFreshnessAtOpenMillis;
+
+    synchronized void recordSync(long latencyMillis, int queriesFetched, long bytesTransferred) {
+        mSyncCount++;
+        mLastSyncLatencyMillis = latencyMillis;
+        mTotalSyncLatencyMillis += latencyMillis;
+        mQueriesFetched += queriesFetched;
+        mBytesTransferred += bytesTransferred;
+    }
+
+    /**
+     * Record a foreground read of the cache and the age of the result, -1 for a miss.
+     */
+    synchronized void recordOpen(long ageMillis) {
+        mOpenCount++;
+        if (ageMillis >= 0) {
+            mCacheHits++;
+            mLastFreshnessAtOpenMillis = ageMillis;
+            mTotalFreshnessAtOpenMillis += ageMillis;
+        }
+    }
+
+    /**
+     * Return the number of syncs which fetched at least one query
+     */
+    public synchronized long getSyncCount() {
+        return mSyncCount;
+    }
+
+    /**
+     * Return the duration of the latest sync in milliseconds
+     */
+    public synchronized long getLastSyncLatencyMillis() {
+        return mLastSyncLatencyMillis;
+    }
+
+    /**
+     * Return the average duration of a sync in milliseconds
+     */
+    public synchronized long getAverageSyncLatencyMillis() {
+        return mSyncCount == 0 ? 0 : mTotalSyncLatencyMillis / mSyncCount;
+    }
+
+    /**
+     * Return the number of queries fetched by the syncs
+     */
+    public synchronized long getQueriesFetched() {
+        return mQueriesFetched;
+    }
+
+    /**
+     * Return the number of response body bytes received by the syncs, without the bytes of
+     * hedged attempts which lost
+     */
+    public synchronized long getBytesTransferred() {
+        return mBytesTransferred;
+    }
+
+    /**
+     * Return the number of foreground reads of the cache
+     */
+    public synchronized long getOpenCount() {
+        return mOpenCount;
+    }
+
+    /**
+     * Return the number of foreground reads served by a fresh cached result
+     */
+    public synchronized long getCacheHits() {
+        return mCacheHits;
+    }
+
+    /**
+     * Return the age of the cached result at the latest cache hit, or -1 if none
+     */
+    public synchronized long getLastFreshnessAtOpenMillis() {
+        return mLastFreshnessAtOpenMillis;
+    }
+
+    /**
+     * Return the average age of the cached results at cache hits
+     */
+    public synchronized long getAverageFreshnessAtOpenMillis() {
+        return mCacheHits == 0 ? 0 : mTotalFreshnessAtOpenMillis / mCacheHits;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "syncs=" + mSyncCount
+                + " lastSyncMs=" + mLastSyncLatencyMillis
+                + " avgSyncMs=" + getAverageSyncLatencyMillis()
+                + " queries=" + mQueriesFetched
+                + " bytes=" + mBytesTransferred
+                + " opens=" + mOpenCount
+                + " hits=" + mCacheHits
+                + " avgFreshnessMs=" + getAverageFreshnessAtOpenMillis();
+    }
+}
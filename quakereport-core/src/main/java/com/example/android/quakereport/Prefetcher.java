@@ -0,0 +1,200 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Prefetcher} decides which queries a periodic background sync should fetch, fetches
+ * them into a {@link PrefetchCache} and serves the cached results to the foreground.
+ * <p>
+ * With a sync period P, a cached query is due once it is P / 2 old. When at least one query
+ * is due, every query at least P / 4 old is fetched too, so that they share the same radio
+ * wake-up instead of each waking the radio up in a later window. The foreground uses a cached
+ * result up to a maximum age set apart from the period and capped at
+ * {@link #MAX_FOREGROUND_AGE_MILLIS}, so that a long period never means showing old results.
+ */
+public class Prefetcher {
+
+    /**
+     * Tag for the log messages
+     */
+    public static final String LOG_TAG = Prefetcher.class.getSimpleName();
+
+    /**
+     * Upper bound of the age of a cached result served to the foreground
+     */
+    public static final long MAX_FOREGROUND_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final PrefetchCache mCache;
+    private final FetchPolicy mFetchPolicy;
+    private final Clock mClock;
+    private final PrefetchMetrics mMetrics = new PrefetchMetrics();
+
+    private volatile long mPeriodMillis;
+    private volatile long mMaxAgeMillis;
+
+    /**
+     * Constructs a new {@link Prefetcher} object
+     *
+     * @param cache        is where the fetched results are stored
+     * @param fetchPolicy  is used for the background requests, normally the one shared with
+     *                     the foreground so that its latency samples cover every request
+     * @param clock        is the source of the current time
+     * @param periodMillis is the period of the background sync
+     * @param maxAgeMillis is the maximum age of a cached result served to the foreground,
+     *                     capped at {@link #MAX_FOREGROUND_AGE_MILLIS}
+     */
+    public Prefetcher(PrefetchCache cache, FetchPolicy fetchPolicy, Clock clock,
+                      long periodMillis, long maxAgeMillis) {
+        mCache = cache;
+        mFetchPolicy = fetchPolicy;
+        mClock = clock;
+        mPeriodMillis = periodMillis;
+        setMaxAgeMillis(maxAgeMillis);
+    }
+
+    /**
+     * Set the period of the background sync, e.g. after the user changed it.
+     */
+    public void setPeriodMillis(long periodMillis) {
+        mPeriodMillis = periodMillis;
+    }
+
+    /**
+     * Set the maximum age of a cached result served to the foreground. It is capped at
+     * {@link #MAX_FOREGROUND_AGE_MILLIS}.
+     */
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        mMaxAgeMillis = Math.min(maxAgeMillis, MAX_FOREGROUND_AGE_MILLIS);
+    }
+
+    /**
+     * Return the maximum age of a cached result served to the foreground
+     */
+    public long getMaxAgeMillis() {
+        return mMaxAgeMillis;
+    }
+
+    /**
+     * Return the queries the sync should fetch now: none if no query is due, otherwise the
+     * due queries and the ones which would become due soon.
+     */
+    public List<String> selectBatch(List<String> requestUrls) {
+        long now = mClock.currentTimeMillis();
+        long period = mPeriodMillis;
+        boolean anyDue = false;
+        List<String> batch = new ArrayList<>();
+        for (String requestUrl : requestUrls) {
+            long age = getAge(requestUrl, now);
+            if (age >= period / 2) {
+                anyDue = true;
+            }
+            if (age >= period / 4 && !batch.contains(requestUrl)) {
+                batch.add(requestUrl);
+            }
+        }
+        if (!anyDue) {
+            batch.clear();
+        }
+        return batch;
+    }
+
+    /**
+     * Fetch the batch selected from the queries and store the results. This makes network
+     * requests, so it must run on a background thread. Interrupting the thread cancels the
+     * sync: the current request stops and the remaining queries are skipped. The results of
+     * other queries, left by earlier settings, are removed from the cache first.
+     *
+     * @return the number of queries fetched and stored
+     */
+    public int sync(List<String> requestUrls) {
+        mCache.retainAll(requestUrls);
+        List<String> batch = selectBatch(requestUrls);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long start = mClock.currentTimeMillis();
+        long bytes = 0;
+        int fetched = 0;
+        for (String requestUrl : batch) {
+            if (Thread.currentThread().isInterrupted()) {
+                CoreLog.v(LOG_TAG, "Prefetch cancelled");
+                break;
+            }
+            // Count the bytes of this sync's own responses, as the policy is shared with the
+            // foreground loads
+            String jsonResponse = QueryUtils.fetchJsonResponse(requestUrl, mFetchPolicy);
+            bytes += jsonResponse.getBytes(StandardCharsets.UTF_8).length;
+            List<Earthquake> earthquakes = QueryUtils.extractFeaturesFromJson(jsonResponse);
+            if (earthquakes != null && put(requestUrl, earthquakes)) {
+                fetched++;
+            }
+        }
+        mMetrics.recordSync(mClock.currentTimeMillis() - start, fetched, bytes);
+        CoreLog.v(LOG_TAG, "Prefetched " + fetched + "/" + batch.size() + " queries, "
+                + mMetrics);
+        return fetched;
+    }
+
+    /**
+     * Return the cached result of the query if it is fresh enough, null otherwise.
+     */
+    public List<Earthquake> getFresh(String requestUrl) {
+        long age = getAge(requestUrl, mClock.currentTimeMillis());
+        List<Earthquake> earthquakes = null;
+        if (age <= mMaxAgeMillis) {
+            earthquakes = mCache.get(requestUrl);
+        }
+        mMetrics.recordOpen(earthquakes != null ? age : -1);
+        return earthquakes;
+    }
+
+    /**
+     * Return the cached result of the query whatever its age, e.g. to show again the list
+     * shown before the process was killed, or null if there is none.
+     */
+    public List<Earthquake> getCached(String requestUrl) {
+        return mCache.get(requestUrl);
+    }
+
+    /**
+     * Return true if a result of the query is cached.
+     */
+    public boolean isCached(String requestUrl) {
+        return mCache.getFetchedAt(requestUrl) >= 0;
+    }
+
+    /**
+     * Store a result fetched in the foreground, so that the next sync can skip it.
+     *
+     * @return true if the result was stored
+     */
+    public boolean put(String requestUrl, List<Earthquake> earthquakes) {
+        try {
+            mCache.put(requestUrl, earthquakes, mClock.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            CoreLog.e(LOG_TAG, "Problem caching the earthquakes", e);
+            return false;
+        }
+    }
+
+    /**
+     * Return the metrics of the syncs and of the foreground reads
+     */
+    public PrefetchMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Return the age of the cached result, or Long.MAX_VALUE if there is none.
+     */
+    private long getAge(String requestUrl, long now) {
+        long fetchedAt = mCache.getFetchedAt(requestUrl);
+        return fetchedAt < 0 ? Long.MAX_VALUE : Math.max(0, now - fetchedAt);
+    }
+}
@@ -1,20 +1,11 @@
 package com.example.android.quakereport;
 
-import android.text.TextUtils;
-import android.util.Log;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,6 +19,11 @@ public class QueryUtils {
      */
     public static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
+    /**
+     * Timeouts, retries and hedging shared by every request to USGS
+     */
+    private static final FetchPolicy sFetchPolicy = new FetchPolicy();
+
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
      * This class is only meant to hold static variables and methods, which can be accessed
@@ -36,22 +32,30 @@ public class QueryUtils {
     private QueryUtils() {
     }
 
+    /**
+     * Return the {@link FetchPolicy} used for the requests, e.g. to read its counters.
+     */
+    public static FetchPolicy getFetchPolicy() {
+        return sFetchPolicy;
+    }
+
     /**
      * Query the USGS dataset and return list of {@link Earthquake} objects.
      */
     public static List<Earthquake> fetchEarthquakesData(String requestUrl) {
-        Log.v(LOG_TAG, "TEST: fetchEarthquakesData");
+        return fetchEarthquakesData(requestUrl, sFetchPolicy);
+    }
 
-        // Create URL object
-        URL url = createUrl(requestUrl);
+    /**
+     * Query the USGS dataset with the given {@link FetchPolicy} and return list of
+     * {@link Earthquake} objects.
+     */
+    public static List<Earthquake> fetchEarthquakesData(String requestUrl,
+                                                        FetchPolicy fetchPolicy) {
+        CoreLog.v(LOG_TAG, "TEST: fetchEarthquakesData");
 
         // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
-        try {
-            jsonResponse = makeHttpRequest(url);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem making the HTTP request.", e);
-        }
+        String jsonResponse = fetchJsonResponse(requestUrl, fetchPolicy);
 
         // Extract relevant fields from the JSON response and create a list of {@link Earthquake}s
         List<Earthquake> earthquakes = extractFeaturesFromJson(jsonResponse);
@@ -60,6 +64,16 @@ public class QueryUtils {
         return earthquakes;
     }
 
+    /**
+     * Query the USGS dataset with the given {@link FetchPolicy} and return the JSON response,
+     * or an empty String if the request failed.
+     */
+    static String fetchJsonResponse(String requestUrl, FetchPolicy fetchPolicy) {
+        // Create URL object
+        URL url = createUrl(requestUrl);
+        return makeHttpRequest(url, fetchPolicy);
+    }
+
     /**
      * Returns new URL object from the given string URL.
      */
@@ -68,7 +82,7 @@ public class QueryUtils {
         try {
             url = new URL(stringUrl);
         } catch (MalformedURLException e) {
-            Log.e(LOG_TAG, "Problem building the URL ", e);
+            CoreLog.e(LOG_TAG, "Problem building the URL ", e);
         }
         return url;
     }
@@ -76,70 +90,22 @@ public class QueryUtils {
     /**
      * Make an HTTP request to the given URL and return a String as the response.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
+    private static String makeHttpRequest(URL url, FetchPolicy fetchPolicy) {
         // If the URL is null, then return early.
         if (url == null) {
-            return jsonResponse;
-        }
-
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
-        try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
-            }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                inputStream.close();
-            }
+            return "";
         }
-        return jsonResponse;
-    }
-
-    /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
-     */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream,
-                    StandardCharsets.UTF_8);
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
-            }
-        }
-        return output.toString();
+        return fetchPolicy.fetch(url);
     }
 
     /**
      * Return list of {@link Earthquake} object by parsing out information
-     * about earthquakes from the input earthquakeJSON string.
+     * about earthquakes from the input earthquakeJSON string, or null if it is missing or
+     * isn't a valid USGS response, e.g. the login page of a captive portal.
      */
-    private static List<Earthquake> extractFeaturesFromJson(String earthquakeJSON) {
+    static List<Earthquake> extractFeaturesFromJson(String earthquakeJSON) {
         // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(earthquakeJSON)) {
+        if (earthquakeJSON == null || earthquakeJSON.isEmpty()) {
             return null;
         }
 
@@ -170,16 +136,25 @@ public class QueryUtils {
                 // Extract the value for the key called "url"
                 String url = properties.getString("url");
 
-                // Create a new {@link Earthquake} object with the magnitude, location, time,
-                // and url from the JSON response.
-                Earthquake earthquake = new Earthquake(magnitude, place, time, url);
+                // Extract the value for the key called "updated", which changes with each
+                // revision of the event
+                long updated = properties.optLong("updated", time);
+
+                // Extract the id of the feature, which identifies the event across queries
+                String id = feature.optString("id", null);
+
+                // Create a new {@link Earthquake} object with the id, magnitude, location, time,
+                // url and revision time from the JSON response.
+                Earthquake earthquake = new Earthquake(id, magnitude, place, time, url, updated);
                 earthquakes.add(earthquake);
             }
         } catch (JSONException e) {
             // If an error is thrown when executing any of the above statements in the "try" block,
             // catch the exception here, so the app doesn't crash. Print a log message
             // with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
+            CoreLog.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
+            // A partial or empty list would pass for the actual result, e.g. in the cache
+            return null;
         }
         // Return the list of earthquakes
         return earthquakes;
@@ -0,0 +1,98 @@
+package com.example.android.quakereport;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * {@link UsgsQueryBuilder} builds request URLs for the USGS earthquake catalog,
+ * see https://earthquake.usgs.gov/fdsnws/event/1/
+ */
+public class UsgsQueryBuilder {
+
+    /**
+     * URL of the USGS earthquake query endpoint
+     */
+    public static final String USGS_REQUEST_URL =
+            "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    /**
+     * Number of earthquakes shown in the list
+     */
+    private static final int EARTHQUAKE_LIMIT = 10;
+
+    private final String mBaseUrl;
+    private final StringBuilder mQuery = new StringBuilder();
+
+    /**
+     * Constructs a new {@link UsgsQueryBuilder} for the USGS endpoint
+     */
+    public UsgsQueryBuilder() {
+        this(USGS_REQUEST_URL);
+    }
+
+    /**
+     * Constructs a new {@link UsgsQueryBuilder} for another endpoint with the same API,
+     * e.g. a local stub server
+     *
+     * @param baseUrl is the URL without any query parameter
+     */
+    public UsgsQueryBuilder(String baseUrl) {
+        mBaseUrl = baseUrl;
+    }
+
+    /**
+     * Return the URL used by the earthquake list for the given preferences.
+     *
+     * @param baseUrl      is the URL without any query parameter
+     * @param minMagnitude is the minimum magnitude of the earthquakes
+     * @param orderBy      is either "magnitude" or "time"
+     */
+    public static String buildEarthquakeQuery(String baseUrl, String minMagnitude,
+                                              String orderBy) {
+        return new UsgsQueryBuilder(baseUrl)
+                .appendQueryParameter("format", "geojson")
+                .appendQueryParameter("eventtype", "earthquake")
+                .appendQueryParameter("limit", String.valueOf(EARTHQUAKE_LIMIT))
+                .appendQueryParameter("minmag", minMagnitude)
+                .appendQueryParameter("orderby", orderBy)
+                .build();
+    }
+
+    /**
+     * Encode the key and value and append them to the query.
+     */
+    public UsgsQueryBuilder appendQueryParameter(String key, String value) {
+        mQuery.append(mQuery.length() == 0 ? '?' : '&')
+                .append(encode(key))
+                .append('=')
+                .append(encode(value));
+        return this;
+    }
+
+    /**
+     * Return the URL as a String.
+     */
+    public String build() {
+        return mBaseUrl + mQuery;
+    }
+
+    /**
+     * Percent-encode the value the way android.net.Uri does, so that the URLs stay the same as
+     * when they were built with Uri.Builder: URLEncoder encodes a space as '+' and escapes
+     * "!~'()", which Uri leaves alone.
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value == null ? "" : value, "UTF-8")
+                    .replace("+", "%20")
+                    .replace("%21", "!")
+                    .replace("%7E", "~")
+                    .replace("%27", "'")
+                    .replace("%28", "(")
+                    .replace("%29", ")");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported.
+            throw new AssertionError(e);
+        }
+    }
+}
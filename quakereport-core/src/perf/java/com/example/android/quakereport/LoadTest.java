@@ -0,0 +1,189 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link LoadTest} runs the fetch and parse pipeline of {@link QueryUtils} against a local
+ * {@link UsgsStubServer} and prints the end-to-end latency distribution and throughput of
+ * each scenario.
+ * <p>
+ * Run it with {@code ./gradlew :quakereport-core:loadTest}, optionally followed by
+ * {@code --args="<scenario> ..."} to run only some of the scenarios.
+ */
+public class LoadTest {
+
+    /**
+     * Seed shared by every scenario, so that runs can be compared with each other
+     */
+    private static final long SEED = 42;
+
+    private static final Scenario[] SCENARIOS = {
+            new Scenario("baseline", 200, 4).setPageSize(10),
+            new Scenario("large-pages", 50, 4).setPageSize(2000),
+            new Scenario("mobile-3g", 50, 2).setLatency(150, 100).setBytesPerSecond(96 * 1024),
+            new Scenario("flaky", 100, 4).setLatency(20, 20).setErrorRate(0.1),
+            new Scenario("tail-latency", 200, 4).setLatency(20, 20).setTail(0.03, 1500),
+            new Scenario("tail-latency-hedged", 200, 4).setLatency(20, 20).setTail(0.03, 1500)
+                    .setHedged(true),
+    };
+
+    public static void main(String[] args) throws Exception {
+        List<String> selected = Arrays.asList(args);
+        System.out.println(String.format(Locale.US,
+                "%-20s %6s %6s %8s %8s %8s %8s %8s %9s %7s %6s %6s",
+                "scenario", "reqs", "fails", "p50 ms", "p90 ms", "p99 ms", "max ms",
+                "req/s", "events/s", "retries", "hedges", "wins"));
+        for (Scenario scenario : SCENARIOS) {
+            if (selected.isEmpty() || selected.contains(scenario.name)) {
+                run(scenario);
+            }
+        }
+    }
+
+    private static void run(final Scenario scenario)
+            throws IOException, InterruptedException, ExecutionException {
+        UsgsStubServer server = new UsgsStubServer.Builder()
+                .setSeed(SEED)
+                .setCatalogSize(20000)
+                .setLatency(scenario.latencyMillis, scenario.jitterMillis)
+                .setTail(scenario.tailRate, scenario.tailMillis)
+                .setBytesPerSecond(scenario.bytesPerSecond)
+                .setErrorRate(scenario.errorRate)
+                .build();
+        server.start();
+
+        final FetchPolicy fetchPolicy = new FetchPolicy(3, 100, 2000, scenario.hedged);
+        ExecutorService executor = Executors.newFixedThreadPool(scenario.concurrency);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < scenario.requests; i++) {
+                final String requestUrl = buildRequestUrl(server.getQueryUrl(), scenario, i);
+                results.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        long requestStart = System.nanoTime();
+                        List<Earthquake> earthquakes =
+                                QueryUtils.fetchEarthquakesData(requestUrl, fetchPolicy);
+                        long latency = System.nanoTime() - requestStart;
+                        // A null list means the request failed, not that it was empty
+                        int count = earthquakes == null ? -1 : earthquakes.size();
+                        return new long[]{latency, count};
+                    }
+                }));
+            }
+
+            long[] latencies = new long[scenario.requests];
+            int failures = 0;
+            long events = 0;
+            for (int i = 0; i < results.size(); i++) {
+                long[] result = results.get(i).get();
+                latencies[i] = result[0];
+                if (result[1] < 0) {
+                    failures++;
+                } else {
+                    events += result[1];
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.println(String.format(Locale.US,
+                    "%-20s %6d %6d %8.1f %8.1f %8.1f %8.1f %8.1f %9.0f %7d %6d %6d",
+                    scenario.name, scenario.requests, failures,
+                    percentileMillis(latencies, 50), percentileMillis(latencies, 90),
+                    percentileMillis(latencies, 99), percentileMillis(latencies, 100),
+                    scenario.requests / seconds, events / seconds,
+                    fetchPolicy.getRetryCount(), fetchPolicy.getHedgeCount(),
+                    fetchPolicy.getHedgeWinCount()));
+        } finally {
+            executor.shutdownNow();
+            server.stop();
+        }
+    }
+
+    /**
+     * Return the request URL of the given request, alternating the orderings the app uses
+     * and paging through the results.
+     */
+    private static String buildRequestUrl(String baseUrl, Scenario scenario, int request) {
+        return new UsgsQueryBuilder(baseUrl)
+                .appendQueryParameter("format", "geojson")
+                .appendQueryParameter("eventtype", "earthquake")
+                .appendQueryParameter("limit", String.valueOf(scenario.pageSize))
+                .appendQueryParameter("offset",
+                        String.valueOf(1 + (request % 5) * scenario.pageSize))
+                .appendQueryParameter("minmag", String.valueOf(1 + request % 3))
+                .appendQueryParameter("orderby", request % 2 == 0 ? "magnitude" : "time")
+                .build();
+    }
+
+    private static double percentileMillis(long[] sortedNanos, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * {@link Scenario} describes the simulated network and the load of one run
+     */
+    private static class Scenario {
+        private final String name;
+        private final int requests;
+        private final int concurrency;
+        private long latencyMillis;
+        private long jitterMillis;
+        private double tailRate;
+        private long tailMillis;
+        private long bytesPerSecond;
+        private double errorRate;
+        private boolean hedged;
+        private int pageSize = 200;
+
+        private Scenario(String name, int requests, int concurrency) {
+            this.name = name;
+            this.requests = requests;
+            this.concurrency = concurrency;
+        }
+
+        private Scenario setLatency(long latencyMillis, long jitterMillis) {
+            this.latencyMillis = latencyMillis;
+            this.jitterMillis = jitterMillis;
+            return this;
+        }
+
+        private Scenario setTail(double tailRate, long tailMillis) {
+            this.tailRate = tailRate;
+            this.tailMillis = tailMillis;
+            return this;
+        }
+
+        private Scenario setBytesPerSecond(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        private Scenario setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        private Scenario setHedged(boolean hedged) {
+            this.hedged = hedged;
+            return this;
+        }
+
+        private Scenario setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.android.quakereport;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link SnapshotBenchmark} checks that {@link EarthquakeSnapshot} round-trips a large result
+ * set and prints its size against the GeoJSON response, and its write and read times against
+ * the time to parse the GeoJSON response. Every time is an average over warmed-up runs.
+ * <p>
+ * Run it with {@code ./gradlew :quakereport-core:snapshotBenchmark}.
+ */
+public class SnapshotBenchmark {
+
+    private static final int EVENT_COUNT = 10000;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws Exception {
+        UsgsStubServer server = new UsgsStubServer.Builder()
+                .setSeed(42)
+                .setCatalogSize(EVENT_COUNT)
+                .build();
+        server.start();
+        String geoJson;
+        try {
+            String requestUrl = new UsgsQueryBuilder(server.getQueryUrl())
+                    .appendQueryParameter("format", "geojson")
+                    .appendQueryParameter("limit", String.valueOf(EVENT_COUNT))
+                    .build();
+            geoJson = new FetchPolicy().fetch(new URL(requestUrl));
+        } finally {
+            server.stop();
+        }
+        List<Earthquake> earthquakes = QueryUtils.extractFeaturesFromJson(geoJson);
+
+        File file = File.createTempFile("earthquakes", ".snapshot");
+        file.deleteOnExit();
+        EarthquakeSnapshot.write(earthquakes, file);
+        checkRoundTrip(earthquakes, EarthquakeSnapshot.read(file));
+
+        // Warm up and measure the GeoJSON parse the same way, so that the read is compared
+        // with a parse running compiled code too
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            EarthquakeSnapshot.write(earthquakes, file);
+            EarthquakeSnapshot.read(file);
+            QueryUtils.extractFeaturesFromJson(geoJson);
+        }
+        long writeNanos = 0;
+        long readNanos = 0;
+        long parseNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            EarthquakeSnapshot.write(earthquakes, file);
+            writeNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            EarthquakeSnapshot.read(file);
+            readNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            QueryUtils.extractFeaturesFromJson(geoJson);
+            parseNanos += System.nanoTime() - start;
+        }
+
+        int geoJsonSize = geoJson.getBytes(StandardCharsets.UTF_8).length;
+        System.out.println(String.format(Locale.US, "events:          %d", earthquakes.size()));
+        System.out.println(String.format(Locale.US, "GeoJSON size:    %d bytes", geoJsonSize));
+        System.out.println(String.format(Locale.US, "snapshot size:   %d bytes (%.1f%%)",
+                file.length(), 100.0 * file.length() / geoJsonSize));
+        System.out.println(String.format(Locale.US, "snapshot write:  %.2f ms",
+                writeNanos / 1e6 / ITERATIONS));
+        System.out.println(String.format(Locale.US, "snapshot read:   %.2f ms",
+                readNanos / 1e6 / ITERATIONS));
+        System.out.println(String.format(Locale.US, "GeoJSON parse:   %.2f ms",
+                parseNanos / 1e6 / ITERATIONS));
+    }
+
+    private static void checkRoundTrip(List<Earthquake> expected, List<Earthquake> actual)
+            throws IOException {
+        if (expected.size() != actual.size()) {
+            throw new IOException("Expected " + expected.size() + " events, read "
+                    + actual.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Earthquake a = expected.get(i);
+            Earthquake b = actual.get(i);
+            boolean same = a.getId().equals(b.getId())
+                    && a.getPlace().equals(b.getPlace())
+                    && a.getUrl().equals(b.getUrl())
+                    && a.getDateTime().equals(b.getDateTime())
+                    && a.getUpdatedInMilliseconds() == b.getUpdatedInMilliseconds()
+                    && Math.abs(a.getMagnitude() - b.getMagnitude()) < 0.005f;
+            if (!same) {
+                throw new IOException("Event " + i + " changed after the round trip");
+            }
+        }
+    }
+}
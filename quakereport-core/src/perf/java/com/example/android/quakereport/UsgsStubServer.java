@@ -0,0 +1,435 @@
+package com.example.android.quakereport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link UsgsStubServer} is an in-process HTTP server emulating the USGS
+ * {@code fdsnws/event/1/query} endpoint. It serves a synthetic catalog generated
+ * deterministically from a seed, and can simulate latency, limited bandwidth and errors.
+ * <p>
+ * Supported parameters: {@code format} (geojson only), {@code limit}, {@code offset},
+ * {@code minmag}, {@code orderby} and {@code updatedafter}.
+ */
+public class UsgsStubServer {
+
+    /**
+     * Path of the emulated endpoint
+     */
+    public static final String QUERY_PATH = "/fdsnws/event/1/query";
+
+    /**
+     * Largest limit accepted by USGS
+     */
+    private static final int MAX_LIMIT = 20000;
+
+    /**
+     * Time of the most recent synthetic event, so that the catalog doesn't depend on the clock
+     */
+    private static final long CATALOG_END_TIME = 1650000000000L;
+
+    private static final String[] PLACES = {
+            "Anchorage, Alaska", "Ridgecrest, CA", "Hilo, Hawaii", "Tokyo, Japan",
+            "Valparaiso, Chile", "Suva, Fiji", "Lima, Peru", "Wellington, New Zealand",
+            "Reykjavik, Iceland", "Padang, Indonesia", "Oaxaca, Mexico", "Izmir, Turkey"
+    };
+
+    private static final String[] DIRECTIONS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    /**
+     * Synthetic catalog, ordered by time descending
+     */
+    private final String[] mIds;
+    private final float[] mMagnitudes;
+    private final long[] mTimes;
+    private final long[] mUpdated;
+    private final String[] mPlaces;
+
+    private final long mLatencyMillis;
+    private final long mJitterMillis;
+    private final double mTailRate;
+    private final long mTailMillis;
+    private final long mBytesPerSecond;
+    private final double mErrorRate;
+
+    private final Random mFaultRandom;
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+
+    private UsgsStubServer(Builder builder) throws IOException {
+        mLatencyMillis = builder.mLatencyMillis;
+        mJitterMillis = builder.mJitterMillis;
+        mTailRate = builder.mTailRate;
+        mTailMillis = builder.mTailMillis;
+        mBytesPerSecond = builder.mBytesPerSecond;
+        mErrorRate = builder.mErrorRate;
+        mFaultRandom = new Random(builder.mSeed ^ 0x5DEECE66DL);
+
+        int size = builder.mCatalogSize;
+        mIds = new String[size];
+        mMagnitudes = new float[size];
+        mTimes = new long[size];
+        mUpdated = new long[size];
+        mPlaces = new String[size];
+        generateCatalog(new Random(builder.mSeed));
+
+        mServer = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mExecutor);
+        mServer.createContext(QUERY_PATH, new QueryHandler());
+    }
+
+    /**
+     * Fill the catalog with events whose magnitudes roughly follow the Gutenberg-Richter law.
+     */
+    private void generateCatalog(Random random) {
+        long time = CATALOG_END_TIME;
+        for (int i = 0; i < mIds.length; i++) {
+            time -= 1000 + random.nextInt(30 * 60 * 1000);
+            mIds[i] = String.format(Locale.US, "sk%08d", i);
+            float magnitude = (float) (1.0 - Math.log(1.0 - random.nextDouble()) / Math.log(10));
+            mMagnitudes[i] = Math.min(9.5f, Math.round(magnitude * 100) / 100f);
+            mTimes[i] = time;
+            mUpdated[i] = time + random.nextInt(24 * 60 * 60 * 1000);
+            mPlaces[i] = (1 + random.nextInt(200)) + " km "
+                    + DIRECTIONS[random.nextInt(DIRECTIONS.length)] + " of "
+                    + PLACES[random.nextInt(PLACES.length)];
+        }
+    }
+
+    /**
+     * Start serving requests.
+     */
+    public void start() {
+        mServer.start();
+    }
+
+    /**
+     * Stop the server and its threads.
+     */
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Return the URL of the query endpoint, without any query parameter.
+     */
+    public String getQueryUrl() {
+        InetSocketAddress address = mServer.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort() + QUERY_PATH;
+    }
+
+    /**
+     * Return the number of events in the synthetic catalog
+     */
+    public int getCatalogSize() {
+        return mIds.length;
+    }
+
+    private class QueryHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                simulateLatency();
+                if (shouldFail()) {
+                    exchange.getResponseHeaders().add("Retry-After", "1");
+                    sendError(exchange, 503, "Service Unavailable");
+                    return;
+                }
+
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                String format = query.get("format");
+                if (format != null && !format.equals("geojson")) {
+                    sendError(exchange, 400, "Unsupported format: " + format);
+                    return;
+                }
+
+                byte[] body;
+                try {
+                    body = toGeoJson(select(query)).getBytes(StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                writeThrottled(exchange.getResponseBody(), body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        long delay = mLatencyMillis;
+        synchronized (mFaultRandom) {
+            delay += (long) (mFaultRandom.nextDouble() * mJitterMillis);
+            if (mFaultRandom.nextDouble() < mTailRate) {
+                delay += mTailMillis;
+            }
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    private boolean shouldFail() {
+        synchronized (mFaultRandom) {
+            return mFaultRandom.nextDouble() < mErrorRate;
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int code, String message)
+            throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Write the body in small chunks, pausing between them to respect the bandwidth.
+     */
+    private void writeThrottled(OutputStream output, byte[] body)
+            throws IOException, InterruptedException {
+        if (mBytesPerSecond <= 0) {
+            output.write(body);
+            return;
+        }
+        int chunkSize = (int) Math.max(512, Math.min(16384, mBytesPerSecond / 20));
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, body.length - offset);
+            output.write(body, offset, length);
+            output.flush();
+            long expectedNanos = (offset + length) * 1000000000L / mBytesPerSecond;
+            long aheadMillis = (expectedNanos - (System.nanoTime() - start)) / 1000000L;
+            if (aheadMillis > 0) {
+                Thread.sleep(aheadMillis);
+            }
+        }
+    }
+
+    /**
+     * Return the catalog indexes matching the query, in the requested order.
+     */
+    private List<Integer> select(Map<String, String> query) {
+        double minMagnitude = parseDouble(query.get("minmag"), Double.NEGATIVE_INFINITY);
+        long updatedAfter = parseTime(query.get("updatedafter"));
+        int limit = (int) parseDouble(query.get("limit"), MAX_LIMIT);
+        int offset = (int) parseDouble(query.get("offset"), 1);
+        if (limit < 1 || limit > MAX_LIMIT || offset < 1) {
+            throw new IllegalArgumentException("Bad limit or offset");
+        }
+
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < mIds.length; i++) {
+            if (mMagnitudes[i] >= minMagnitude && mUpdated[i] > updatedAfter) {
+                matches.add(i);
+            }
+        }
+
+        String orderBy = query.get("orderby");
+        if (orderBy == null || orderBy.equals("time")) {
+            // The catalog is already ordered by time descending.
+        } else if (orderBy.equals("time-asc")) {
+            Collections.reverse(matches);
+        } else if (orderBy.equals("magnitude") || orderBy.equals("magnitude-asc")) {
+            final int sign = orderBy.equals("magnitude") ? -1 : 1;
+            matches.sort(new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return sign * Float.compare(mMagnitudes[a], mMagnitudes[b]);
+                }
+            });
+        } else {
+            throw new IllegalArgumentException("Bad orderby value: " + orderBy);
+        }
+
+        int from = Math.min(offset - 1, matches.size());
+        int to = Math.min(from + limit, matches.size());
+        return matches.subList(from, to);
+    }
+
+    private String toGeoJson(List<Integer> indexes) {
+        StringBuilder json = new StringBuilder(256 + indexes.size() * 512);
+        json.append("{\"type\":\"FeatureCollection\",\"metadata\":{\"generated\":")
+                .append(CATALOG_END_TIME)
+                .append(",\"title\":\"USGS Stub Earthquakes\",\"status\":200,\"count\":")
+                .append(indexes.size())
+                .append("},\"features\":[");
+        for (int n = 0; n < indexes.size(); n++) {
+            int i = indexes.get(n);
+            if (n > 0) {
+                json.append(',');
+            }
+            String url = "https://earthquake.usgs.gov/earthquakes/eventpage/" + mIds[i];
+            json.append("{\"type\":\"Feature\",\"properties\":{\"mag\":")
+                    .append(mMagnitudes[i])
+                    .append(",\"place\":\"").append(mPlaces[i])
+                    .append("\",\"time\":").append(mTimes[i])
+                    .append(",\"updated\":").append(mUpdated[i])
+                    .append(",\"tz\":null,\"url\":\"").append(url)
+                    .append("\",\"detail\":\"").append(url).append(".geojson")
+                    .append("\",\"status\":\"reviewed\",\"tsunami\":0,\"net\":\"sk\"")
+                    .append(",\"code\":\"").append(mIds[i], 2, mIds[i].length())
+                    .append("\",\"ids\":\",").append(mIds[i])
+                    .append(",\",\"magType\":\"ml\",\"type\":\"earthquake\",\"title\":\"M ")
+                    .append(mMagnitudes[i]).append(" - ").append(mPlaces[i])
+                    .append("\"},\"geometry\":{\"type\":\"Point\",\"coordinates\":[")
+                    .append(-180 + (i * 7919 % 36000) / 100.0).append(',')
+                    .append(-90 + (i * 104729 % 18000) / 100.0).append(',')
+                    .append(i % 700 / 10.0)
+                    .append("]},\"id\":\"").append(mIds[i]).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery)
+            throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                query.put(URLDecoder.decode(pair, "UTF-8"), "");
+            } else {
+                query.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+            }
+        }
+        return query;
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number: " + value);
+        }
+    }
+
+    /**
+     * Parse an ISO 8601 time as accepted by USGS, or epoch milliseconds.
+     */
+    private static long parseTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        if (value.matches("\\d+")) {
+            return Long.parseLong(value);
+        }
+        for (String pattern : Arrays.asList("yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss",
+                "yyyy-MM-dd")) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            format.setLenient(false);
+            try {
+                return format.parse(value).getTime();
+            } catch (ParseException e) {
+                // Try the next pattern
+            }
+        }
+        throw new IllegalArgumentException("Bad time: " + value);
+    }
+
+    /**
+     * {@link Builder} configures the catalog and the simulated network of a
+     * {@link UsgsStubServer}
+     */
+    public static class Builder {
+        private long mSeed = 1;
+        private int mCatalogSize = 5000;
+        private long mLatencyMillis;
+        private long mJitterMillis;
+        private double mTailRate;
+        private long mTailMillis;
+        private long mBytesPerSecond;
+        private double mErrorRate;
+
+        /**
+         * Set the seed of the synthetic catalog and of the simulated faults
+         */
+        public Builder setSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        /**
+         * Set the number of events in the synthetic catalog
+         */
+        public Builder setCatalogSize(int catalogSize) {
+            mCatalogSize = catalogSize;
+            return this;
+        }
+
+        /**
+         * Delay every response by the latency plus a uniform random jitter
+         */
+        public Builder setLatency(long latencyMillis, long jitterMillis) {
+            mLatencyMillis = latencyMillis;
+            mJitterMillis = jitterMillis;
+            return this;
+        }
+
+        /**
+         * Delay the given fraction of responses by an extra amount, to simulate a long tail
+         */
+        public Builder setTail(double tailRate, long tailMillis) {
+            mTailRate = tailRate;
+            mTailMillis = tailMillis;
+            return this;
+        }
+
+        /**
+         * Limit the speed at which response bodies are written, 0 for unlimited
+         */
+        public Builder setBytesPerSecond(long bytesPerSecond) {
+            mBytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Set the fraction of requests answered with a 503 error
+         */
+        public Builder setErrorRate(double errorRate) {
+            mErrorRate = errorRate;
+            return this;
+        }
+
+        public UsgsStubServer build() throws IOException {
+            return new UsgsStubServer(this);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class EarthquakeSnapshotTest {
+
+    private static final List<Earthquake> EARTHQUAKES = Arrays.asList(
+            new Earthquake("us1000abcd", 6.25f, "10 km N of Somewhere", 1600000000000L,
+                    EarthquakeSnapshot.EVENT_PAGE_URL + "us1000abcd", 1600000500000L),
+            new Earthquake("ci3912", -0.5f, "10 km N of Somewhere", 1599990000000L,
+                    "https://example.com/ci3912", 1599990000000L),
+            new Earthquake(null, 2.1f, null, 1600000000000L, null, 1600000000000L));
+
+    @Test
+    public void roundTrip() throws IOException {
+        List<Earthquake> decoded =
+                EarthquakeSnapshot.decode(EarthquakeSnapshot.encode(EARTHQUAKES));
+        assertEquals(EARTHQUAKES.size(), decoded.size());
+        for (int i = 0; i < EARTHQUAKES.size(); i++) {
+            Earthquake expected = EARTHQUAKES.get(i);
+            Earthquake actual = decoded.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getPlace(), actual.getPlace());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getMagnitude(), actual.getMagnitude(), 0.005);
+            assertEquals(expected.getDateTime(), actual.getDateTime());
+            assertEquals(expected.getUpdatedInMilliseconds(), actual.getUpdatedInMilliseconds());
+        }
+        assertNull(decoded.get(2).getId());
+    }
+
+    @Test
+    public void decode_rejectsBadMagicAndVersion() {
+        assertCorrupt(new byte[]{'Q', 'K', 'S', 'X', 1, 0, 0});
+        assertCorrupt(header(EarthquakeSnapshot.VERSION + 1, 0, 0));
+    }
+
+    @Test
+    public void decode_rejectsEveryTruncation() {
+        byte[] snapshot = EarthquakeSnapshot.encode(EARTHQUAKES);
+        for (int length = 0; length < snapshot.length; length++) {
+            assertCorrupt(Arrays.copyOf(snapshot, length));
+        }
+    }
+
+    @Test
+    public void decode_rejectsTenByteVarintCount() {
+        // 2^63 + ..., negative once read as a long
+        assertCorrupt(header(EarthquakeSnapshot.VERSION,
+                0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01));
+    }
+
+    @Test
+    public void decode_rejectsOversizedCount() {
+        // Integer.MAX_VALUE + 1 strings
+        assertCorrupt(header(EarthquakeSnapshot.VERSION, 0x80, 0x80, 0x80, 0x80, 0x08));
+        // More records than bytes left
+        assertCorrupt(header(EarthquakeSnapshot.VERSION, 0, 100, 0, 0, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void decode_rejectsHugeStringReferences() {
+        // No strings, one record whose id has the reference 2^31
+        assertCorrupt(header(EarthquakeSnapshot.VERSION, 0, 1,
+                0x80, 0x80, 0x80, 0x80, 0x08, 0, 0, 0, 0, 0));
+        // Same for the place and the URL
+        assertCorrupt(header(EarthquakeSnapshot.VERSION, 0, 1,
+                0, 0x80, 0x80, 0x80, 0x80, 0x08, 0, 0, 0, 0));
+        assertCorrupt(header(EarthquakeSnapshot.VERSION, 0, 1,
+                0, 0, 0x80, 0x80, 0x80, 0x80, 0x08, 0, 0, 0));
+        assertCorrupt(header(EarthquakeSnapshot.VERSION, 0, 1,
+                0, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01, 0, 0, 0));
+    }
+
+    @Test
+    public void decode_rejectsMalformedVarint() {
+        assertCorrupt(header(EarthquakeSnapshot.VERSION,
+                0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01));
+    }
+
+    @Test
+    public void decode_failsOnlyWithIOExceptionOnRandomCorruption() {
+        byte[] snapshot = EarthquakeSnapshot.encode(EARTHQUAKES);
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            byte[] corrupted = snapshot.clone();
+            int flips = 1 + random.nextInt(4);
+            for (int j = 0; j < flips; j++) {
+                // Leave the header alone, it is checked before anything else
+                int position = 5 + random.nextInt(corrupted.length - 5);
+                corrupted[position] = (byte) random.nextInt(256);
+            }
+            try {
+                EarthquakeSnapshot.decode(corrupted);
+            } catch (IOException e) {
+                // Expected for most corruptions
+            }
+        }
+    }
+
+    private static byte[] header(int version, int... varintBytes) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write('Q');
+        output.write('K');
+        output.write('S');
+        output.write('N');
+        output.write(version);
+        for (int b : varintBytes) {
+            output.write(b);
+        }
+        return output.toByteArray();
+    }
+
+    private static void assertCorrupt(byte[] snapshot) {
+        try {
+            EarthquakeSnapshot.decode(snapshot);
+            fail("Decoded a corrupt snapshot: " + Arrays.toString(snapshot));
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
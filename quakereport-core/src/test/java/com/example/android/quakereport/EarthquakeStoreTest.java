@@ -0,0 +1,178 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EarthquakeStoreTest {
+
+    @Test
+    public void merge_sharesRecordsBetweenViews() {
+        EarthquakeStore store = new EarthquakeStore();
+        Earthquake a = earthquake("a", 1);
+        Earthquake b = earthquake("b", 1);
+        Earthquake c = earthquake("c", 1);
+        List<Earthquake> first = store.merge(Arrays.asList(a, b));
+        List<Earthquake> second = store.merge(Arrays.asList(c, earthquake("b", 1), a));
+
+        assertEquals(3, store.size());
+        assertEquals(Arrays.asList(a, b), first);
+        assertEquals(Arrays.asList(c, b, a), second);
+        assertSame(first.get(1), second.get(1));
+        assertNull(store.merge(null));
+    }
+
+    @Test
+    public void put_handlesCollisionsAndRehash() {
+        EarthquakeStore store = new EarthquakeStore();
+        // Every id has the same String hash code, so they all probe from the same slot
+        List<String> ids = collidingIds(8);
+        for (String id : ids) {
+            store.put(earthquake(id, 1));
+        }
+        // Then enough distinct ids to rehash the table several times
+        for (int i = 0; i < 1000; i++) {
+            store.put(earthquake("us" + i, 1));
+        }
+
+        assertEquals(ids.size() + 1000, store.size());
+        for (String id : ids) {
+            assertEquals(id, store.get(store.indexOf(id)).getId());
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("us" + i, store.get(store.indexOf("us" + i)).getId());
+        }
+        assertEquals(-1, store.indexOf("missing"));
+        assertEquals(-1, store.indexOf(ids.get(0) + "Aa"));
+    }
+
+    @Test
+    public void put_keepsNewestRevision() {
+        EarthquakeStore store = new EarthquakeStore();
+        Earthquake original = earthquake("a", 100);
+        Earthquake revision = earthquake("a", 200);
+        Earthquake stale = earthquake("a", 150);
+
+        int index = store.put(original);
+        assertEquals(index, store.put(revision));
+        assertSame(revision, store.get(index));
+        assertEquals(index, store.put(stale));
+        assertSame(revision, store.get(index));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void put_givesEveryNullIdItsOwnRecord() {
+        EarthquakeStore store = new EarthquakeStore();
+        Earthquake first = earthquake(null, 1);
+        Earthquake second = earthquake(null, 1);
+        int firstIndex = store.put(first);
+        int secondIndex = store.put(second);
+        store.put(earthquake("a", 1));
+
+        assertTrue(firstIndex != secondIndex);
+        assertSame(first, store.get(firstIndex));
+        assertSame(second, store.get(secondIndex));
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    public void queryView_seesInPlaceUpdate() {
+        EarthquakeStore store = new EarthquakeStore();
+        List<Earthquake> view = store.merge(Arrays.asList(
+                earthquake("a", 100), earthquake("b", 100)));
+        Earthquake revision = earthquake("b", 200);
+        store.merge(Collections.singletonList(revision));
+
+        assertSame(revision, view.get(1));
+        assertEquals(200, view.get(1).getUpdatedInMilliseconds());
+    }
+
+    @Test
+    public void compact_keepsRecordsOfLiveViews() {
+        EarthquakeStore store = new EarthquakeStore();
+        List<Earthquake> kept = store.merge(Arrays.asList(
+                earthquake(null, 1), earthquake("k1", 1), earthquake("k2", 1)));
+        List<Earthquake> expected = new ArrayList<>(kept);
+        for (int i = 0; i < 200; i++) {
+            store.put(earthquake("loose" + i, 1));
+        }
+        store.compact();
+
+        assertEquals(3, store.size());
+        assertEquals(expected, kept);
+        assertEquals(-1, store.indexOf("loose0"));
+        assertEquals("k2", store.get(store.indexOf("k2")).getId());
+
+        // The renumbered view still sees revisions
+        Earthquake revision = earthquake("k1", 2);
+        store.merge(Collections.singletonList(revision));
+        assertSame(revision, kept.get(1));
+    }
+
+    @Test
+    public void merge_doesNotCompactForManyLiveViewsOfASmallStore() {
+        EarthquakeStore store = new EarthquakeStore();
+        List<Earthquake> result = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            result.add(earthquake("e" + i, 1));
+        }
+        List<List<Earthquake>> views = new ArrayList<>();
+        for (int refresh = 0; refresh < 1000; refresh++) {
+            views.add(store.merge(result));
+        }
+        assertEquals(10, store.size());
+        assertEquals(0, store.getCompactionCount());
+        assertEquals(result, views.get(0));
+    }
+
+    @Test
+    public void merge_dropsRecordsOfUnusedViews() {
+        EarthquakeStore store = new EarthquakeStore();
+        List<Earthquake> result = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // Events without an id can't be matched, so each refresh adds new records
+            result.add(earthquake(null, i));
+        }
+        List<Earthquake> view = null;
+        for (int refresh = 0; refresh < 1000; refresh++) {
+            view = store.merge(result);
+            if (refresh % 100 == 0) {
+                System.gc();
+            }
+        }
+        // Whether the dropped views were collected is up to the garbage collector
+        assumeTrue(store.size() < 1000 * result.size());
+        assertTrue("size " + store.size(), store.size() <= 1000);
+        assertEquals(result, view);
+    }
+
+    private static Earthquake earthquake(String id, long updated) {
+        return new Earthquake(id, 4.5f, "Somewhere", 0, null, updated);
+    }
+
+    /**
+     * Return 2^length distinct ids made of "Aa" and "BB", which share the same hash code.
+     */
+    private static List<String> collidingIds(int length) {
+        List<String> ids = Collections.singletonList("");
+        for (int i = 0; i < length; i++) {
+            List<String> longer = new ArrayList<>();
+            for (String id : ids) {
+                longer.add(id + "Aa");
+                longer.add(id + "BB");
+            }
+            ids = longer;
+        }
+        return ids;
+    }
+}
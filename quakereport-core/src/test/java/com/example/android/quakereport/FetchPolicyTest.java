@@ -0,0 +1,173 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FetchPolicyTest {
+
+    private static final long TAIL_MILLIS = 1500;
+
+    @Test
+    public void parseRetryAfter_seconds() {
+        assertEquals(120000, FetchPolicy.parseRetryAfter("120"));
+        assertEquals(0, FetchPolicy.parseRetryAfter(" 0 "));
+        assertEquals(0, FetchPolicy.parseRetryAfter("-5"));
+    }
+
+    @Test
+    public void parseRetryAfter_hugeValueMakesTheRequestGiveUp() {
+        FetchPolicy fetchPolicy = new FetchPolicy(3, 500, 8000, false);
+        // Would overflow once converted to milliseconds
+        long delay = FetchPolicy.parseRetryAfter("9300000000000000");
+        assertEquals(Long.MAX_VALUE, delay);
+        assertEquals(-1, fetchPolicy.getBackoffMillis(0, delay));
+        // Does not even fit in a long
+        delay = FetchPolicy.parseRetryAfter("99999999999999999999");
+        assertEquals(Long.MAX_VALUE, delay);
+        assertEquals(-1, fetchPolicy.getBackoffMillis(0, delay));
+        assertEquals(0, FetchPolicy.parseRetryAfter("-9300000000000000"));
+    }
+
+    @Test
+    public void parseRetryAfter_httpDate() {
+        SimpleDateFormat format =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        String inOneMinute = format.format(new Date(System.currentTimeMillis() + 60000));
+        long delay = FetchPolicy.parseRetryAfter(inOneMinute);
+        // The date has a one second resolution and the clock moves on while parsing
+        assertTrue("delay " + delay, delay > 55000 && delay <= 60000);
+
+        String past = format.format(new Date(System.currentTimeMillis() - 60000));
+        assertEquals(0, FetchPolicy.parseRetryAfter(past));
+    }
+
+    @Test
+    public void parseRetryAfter_missingOrInvalid() {
+        assertEquals(-1, FetchPolicy.parseRetryAfter(null));
+        assertEquals(-1, FetchPolicy.parseRetryAfter(""));
+        assertEquals(-1, FetchPolicy.parseRetryAfter("soon"));
+    }
+
+    @Test
+    public void getBackoffMillis_fullJitterUnderExponentialCeiling() {
+        FetchPolicy fetchPolicy = new FetchPolicy(3, 500, 8000, false);
+        long[] ceilings = {500, 1000, 2000, 4000, 8000, 8000, 8000};
+        for (int attempt = 0; attempt < ceilings.length; attempt++) {
+            for (int i = 0; i < 100; i++) {
+                long backoff = fetchPolicy.getBackoffMillis(attempt, -1);
+                assertTrue("attempt " + attempt + ": " + backoff,
+                        backoff >= 0 && backoff < ceilings[attempt]);
+            }
+        }
+    }
+
+    @Test
+    public void getBackoffMillis_honorsRetryAfter() {
+        FetchPolicy fetchPolicy = new FetchPolicy(3, 500, 8000, false);
+        assertEquals(0, fetchPolicy.getBackoffMillis(0, 0));
+        assertEquals(3000, fetchPolicy.getBackoffMillis(0, 3000));
+        assertEquals(8000, fetchPolicy.getBackoffMillis(2, 8000));
+    }
+
+    @Test
+    public void getBackoffMillis_givesUpWhenRetryAfterExceedsMaximum() {
+        FetchPolicy fetchPolicy = new FetchPolicy(3, 500, 8000, false);
+        assertEquals(-1, fetchPolicy.getBackoffMillis(0, 8001));
+        assertEquals(-1, fetchPolicy.getBackoffMillis(0, TimeUnit.HOURS.toMillis(1)));
+    }
+
+    @Test
+    public void fetch_doesNotRetryWhenRetryAfterExceedsMaximum() throws Exception {
+        // The stub answers 503 with "Retry-After: 1", more than the 500 ms allowed here
+        UsgsStubServer server = new UsgsStubServer.Builder()
+                .setCatalogSize(10)
+                .setErrorRate(1)
+                .build();
+        server.start();
+        try {
+            FetchPolicy fetchPolicy = new FetchPolicy(3, 100, 500, false);
+            long start = System.nanoTime();
+            assertEquals("", fetchPolicy.fetch(new URL(server.getQueryUrl())));
+            assertEquals(0, fetchPolicy.getRetryCount());
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void hedging_cutsTailLatencyUnderConcurrentLoad() throws Exception {
+        long plainP99 = runTailScenario(new FetchPolicy(3, 100, 2000, false));
+        FetchPolicy hedgedPolicy = new FetchPolicy(3, 100, 2000, true);
+        long hedgedP99 = runTailScenario(hedgedPolicy);
+        assertTrue("plain p99 " + plainP99 + " ms", plainP99 >= TAIL_MILLIS);
+        assertTrue("hedged p99 " + hedgedP99 + " ms", hedgedP99 < TAIL_MILLIS / 3);
+        // The hedge delay must stay near the typical latency. If the cancelled attempts were
+        // recorded too, it would climb to the tail and switch hedging off.
+        long hedgeDelay = hedgedPolicy.getLatencyPercentile(95);
+        assertTrue("hedge delay " + hedgeDelay + " ms", hedgeDelay < TAIL_MILLIS / 10);
+    }
+
+    /**
+     * Run 400 requests, 8 at a time, against a stub server answering 3% of the requests
+     * after an extra {@link #TAIL_MILLIS}.
+     *
+     * @return the p99 end-to-end latency in milliseconds
+     */
+    private static long runTailScenario(final FetchPolicy fetchPolicy) throws Exception {
+        UsgsStubServer server = new UsgsStubServer.Builder()
+                .setSeed(42)
+                .setCatalogSize(2000)
+                .setLatency(20, 20)
+                .setTail(0.03, TAIL_MILLIS)
+                .build();
+        server.start();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final URL url = new URL(UsgsQueryBuilder.buildEarthquakeQuery(
+                    server.getQueryUrl(), "1", "time"));
+            // Warm up the latency window so that hedging is on for every measured request
+            for (int i = 0; i < 16; i++) {
+                fetchPolicy.fetch(url);
+            }
+
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        long start = System.nanoTime();
+                        fetchPolicy.fetch(url);
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                }));
+            }
+            long[] latencies = new long[results.size()];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = results.get(i).get();
+            }
+            Arrays.sort(latencies);
+            return latencies[latencies.length * 99 / 100 - 1];
+        } finally {
+            executor.shutdownNow();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.android.quakereport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrefetchCacheTest {
+
+    private static final long START = 1600000000000L;
+
+    private static final String A = "https://example.com/query?orderby=magnitude";
+    private static final String B = "https://example.com/query?orderby=time";
+    private static final String C = "https://example.com/query?minmag=6";
+
+    private static final List<Earthquake> EARTHQUAKES = Collections.singletonList(
+            new Earthquake("us1000abcd", 6.2f, "10 km N of Somewhere", START, null, START));
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("prefetch").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void readsTheIndexOnFirstUse() throws IOException {
+        // Created before the index exists, so it can only see the entry if it reads it later
+        PrefetchCache cache = new PrefetchCache(mDirectory);
+        new PrefetchCache(mDirectory).put(A, EARTHQUAKES, START);
+
+        assertEquals(START, cache.getFetchedAt(A));
+        assertEquals(EARTHQUAKES.get(0).getId(), cache.get(A).get(0).getId());
+    }
+
+    @Test
+    public void retainAll_deletesTheOtherResults() throws IOException {
+        PrefetchCache cache = new PrefetchCache(mDirectory);
+        cache.put(A, EARTHQUAKES, START);
+        cache.put(B, EARTHQUAKES, START);
+        cache.put(C, EARTHQUAKES, START);
+
+        cache.retainAll(Arrays.asList(A, B));
+        assertEquals(-1, cache.getFetchedAt(C));
+        assertEquals(2, cache.size());
+        // The index and two results
+        assertEquals(3, mDirectory.listFiles().length);
+
+        PrefetchCache reopened = new PrefetchCache(mDirectory);
+        assertEquals(-1, reopened.getFetchedAt(C));
+        assertEquals(START, reopened.getFetchedAt(A));
+    }
+
+    @Test
+    public void put_dropsTheOldestResultsBeyondTheMaximum() throws IOException {
+        PrefetchCache cache = new PrefetchCache(mDirectory);
+        for (int i = 0; i < PrefetchCache.MAX_ENTRIES + 3; i++) {
+            cache.put(C + "&limit=" + i, EARTHQUAKES, START + i);
+        }
+
+        assertEquals(PrefetchCache.MAX_ENTRIES, cache.size());
+        assertEquals(PrefetchCache.MAX_ENTRIES + 1, mDirectory.listFiles().length);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(-1, cache.getFetchedAt(C + "&limit=" + i));
+        }
+        assertEquals(START + 3, cache.getFetchedAt(C + "&limit=3"));
+    }
+
+    @Test
+    public void get_deletesACorruptResult() throws IOException {
+        PrefetchCache cache = new PrefetchCache(mDirectory);
+        cache.put(A, EARTHQUAKES, START);
+        for (File file : mDirectory.listFiles()) {
+            if (file.getName().endsWith(".snapshot")) {
+                OutputStream output = new FileOutputStream(file);
+                try {
+                    output.write(new byte[]{1, 2, 3});
+                } finally {
+                    output.close();
+                }
+            }
+        }
+
+        assertNull(cache.get(A));
+        assertEquals(-1, cache.getFetchedAt(A));
+        assertEquals(-1, new PrefetchCache(mDirectory).getFetchedAt(A));
+        assertTrue(Arrays.equals(new String[]{"index.properties"}, mDirectory.list()));
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.android.quakereport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrefetcherTest {
+
+    private static final long PERIOD = TimeUnit.HOURS.toMillis(1);
+    private static final long MAX_AGE = TimeUnit.MINUTES.toMillis(15);
+    private static final long START = 1600000000000L;
+
+    private static final String A = "https://example.com/query?orderby=magnitude";
+    private static final String B = "https://example.com/query?orderby=time";
+    private static final String C = "https://example.com/query?minmag=6";
+
+    private static final List<Earthquake> EARTHQUAKES = Collections.singletonList(
+            new Earthquake("us1000abcd", 6.2f, "10 km N of Somewhere", START, null, START));
+
+    private File mDirectory;
+    private FakeClock mClock;
+    private Prefetcher mPrefetcher;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("prefetch").toFile();
+        mClock = new FakeClock(START);
+        mPrefetcher = new Prefetcher(new PrefetchCache(mDirectory), new FetchPolicy(), mClock,
+                PERIOD, MAX_AGE);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void selectBatch_selectsEveryQueryNeverFetched() {
+        assertEquals(Arrays.asList(A, B), mPrefetcher.selectBatch(Arrays.asList(A, B, A)));
+    }
+
+    @Test
+    public void selectBatch_isDueAtHalfThePeriod() {
+        cache(A);
+        mClock.mNow = START + PERIOD / 2 - 1;
+        assertTrue(mPrefetcher.selectBatch(Collections.singletonList(A)).isEmpty());
+
+        mClock.mNow = START + PERIOD / 2;
+        assertEquals(Collections.singletonList(A),
+                mPrefetcher.selectBatch(Collections.singletonList(A)));
+    }
+
+    @Test
+    public void selectBatch_addsQueriesAtLeastAQuarterOfThePeriodOld() {
+        cache(A);
+        mClock.mNow = START + PERIOD / 4;
+        cache(B);
+        mClock.mNow = START + PERIOD / 4 + 1;
+        cache(C);
+
+        // A is due, B is exactly P / 4 old and C is 1 ms younger
+        mClock.mNow = START + PERIOD / 2;
+        assertEquals(Arrays.asList(A, B), mPrefetcher.selectBatch(Arrays.asList(A, B, C)));
+
+        // Nothing is due yet, so nothing goes, however old
+        mClock.mNow = START + PERIOD / 2 - 1;
+        assertTrue(mPrefetcher.selectBatch(Arrays.asList(A, B, C)).isEmpty());
+    }
+
+    @Test
+    public void selectBatch_followsThePeriod() {
+        cache(A);
+        mClock.mNow = START + PERIOD / 2;
+        mPrefetcher.setPeriodMillis(PERIOD * 2);
+        assertTrue(mPrefetcher.selectBatch(Collections.singletonList(A)).isEmpty());
+    }
+
+    @Test
+    public void getFresh_servesResultsUpToTheMaximumAge() {
+        assertNull(mPrefetcher.getFresh(A));
+        cache(A);
+
+        mClock.mNow = START + MAX_AGE;
+        assertNotNull(mPrefetcher.getFresh(A));
+        mClock.mNow = START + MAX_AGE + 1;
+        assertNull(mPrefetcher.getFresh(A));
+
+        // The result is still cached for a restore, just not fresh
+        assertNotNull(mPrefetcher.getCached(A));
+        assertEquals(1, mPrefetcher.getMetrics().getCacheHits());
+    }
+
+    @Test
+    public void getFresh_capsTheMaximumAgeWhateverThePeriod() {
+        mPrefetcher.setPeriodMillis(TimeUnit.HOURS.toMillis(12));
+        mPrefetcher.setMaxAgeMillis(TimeUnit.HOURS.toMillis(18));
+        assertEquals(Prefetcher.MAX_FOREGROUND_AGE_MILLIS, mPrefetcher.getMaxAgeMillis());
+
+        cache(A);
+        mClock.mNow = START + Prefetcher.MAX_FOREGROUND_AGE_MILLIS;
+        assertNotNull(mPrefetcher.getFresh(A));
+        mClock.mNow = START + Prefetcher.MAX_FOREGROUND_AGE_MILLIS + 1;
+        assertNull(mPrefetcher.getFresh(A));
+    }
+
+    @Test
+    public void sync_removesTheQueriesOfEarlierSettings() {
+        cache(A);
+        cache(C);
+        // Nothing is due, so nothing is fetched, but C is no longer one of the queries
+        assertEquals(0, mPrefetcher.sync(Collections.singletonList(A)));
+        assertTrue(mPrefetcher.isCached(A));
+        assertFalse(mPrefetcher.isCached(C));
+    }
+
+    @Test
+    public void sync_stopsWhenInterrupted() throws Exception {
+        // Several seconds to send each result, unless the sync gives up
+        UsgsStubServer server = new UsgsStubServer.Builder()
+                .setCatalogSize(2000)
+                .setBytesPerSecond(256)
+                .build();
+        server.start();
+        try {
+            final List<String> requestUrls = Arrays.asList(
+                    UsgsQueryBuilder.buildEarthquakeQuery(server.getQueryUrl(), "1", "time"),
+                    UsgsQueryBuilder.buildEarthquakeQuery(
+                            server.getQueryUrl(), "1", "magnitude"));
+            final int[] fetched = {-1};
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    fetched[0] = mPrefetcher.sync(requestUrls);
+                }
+            });
+            thread.start();
+            Thread.sleep(500);
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+
+            assertFalse("the sync is still running", thread.isAlive());
+            assertEquals(0, fetched[0]);
+            assertFalse(mPrefetcher.isCached(requestUrls.get(0)));
+            assertFalse(mPrefetcher.isCached(requestUrls.get(1)));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void sync_countsTheBytesOfItsOwnResponses() throws IOException {
+        UsgsStubServer server = new UsgsStubServer.Builder().setCatalogSize(100).build();
+        server.start();
+        try {
+            FetchPolicy fetchPolicy = new FetchPolicy();
+            Prefetcher prefetcher = new Prefetcher(new PrefetchCache(mDirectory), fetchPolicy,
+                    mClock, PERIOD, MAX_AGE);
+            String requestUrl =
+                    UsgsQueryBuilder.buildEarthquakeQuery(server.getQueryUrl(), "1", "time");
+            // A foreground load through the same policy is not part of the sync
+            int responseBytes = QueryUtils.fetchJsonResponse(requestUrl, fetchPolicy)
+                    .getBytes(StandardCharsets.UTF_8).length;
+
+            assertEquals(1, prefetcher.sync(Collections.singletonList(requestUrl)));
+            assertEquals(responseBytes, prefetcher.getMetrics().getBytesTransferred());
+            assertEquals(2L * responseBytes, fetchPolicy.getBytesReceived());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void sync_doesNotCacheAnInvalidResponse() throws IOException {
+        // A captive portal answers every request with its login page
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "<html>captive portal</html>".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/html");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String requestUrl = "http://127.0.0.1:" + server.getAddress().getPort()
+                    + "/fdsnws/event/1/query?format=geojson";
+            assertEquals(0, mPrefetcher.sync(Collections.singletonList(requestUrl)));
+            assertFalse(mPrefetcher.isCached(requestUrl));
+            assertNull(mPrefetcher.getFresh(requestUrl));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private void cache(String requestUrl) {
+        assertTrue(mPrefetcher.put(requestUrl, EARTHQUAKES));
+        assertTrue(mPrefetcher.isCached(requestUrl));
+    }
+
+    /**
+     * {@link FakeClock} is a {@link Clock} whose time only moves when the test sets it
+     */
+    private static class FakeClock implements Clock {
+        private long mNow;
+
+        private FakeClock(long now) {
+            mNow = now;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryUtilsTest {
+
+    @Test
+    public void extractFeaturesFromJson_readsEveryFeature() throws IOException {
+        List<Earthquake> earthquakes =
+                QueryUtils.extractFeaturesFromJson(readFixture("usgs_query_response.geojson"));
+        assertEquals(3, earthquakes.size());
+
+        Earthquake first = earthquakes.get(0);
+        assertEquals("us1000chhc", first.getId());
+        assertEquals(7.2f, first.getMagnitude(), 0.001);
+        assertEquals("88 km N of Yelizovo, Russia", first.getPlace());
+        assertEquals(1600000000000L, first.getDateTime().getTime());
+        assertEquals(1600000900000L, first.getUpdatedInMilliseconds());
+        assertEquals("https://earthquake.usgs.gov/earthquakes/eventpage/us1000chhc",
+                first.getUrl());
+    }
+
+    @Test
+    public void extractFeaturesFromJson_defaultsTheUpdatedTimeToTheEventTime()
+            throws IOException {
+        Earthquake second = QueryUtils.extractFeaturesFromJson(
+                readFixture("usgs_query_response.geojson")).get(1);
+        assertEquals("us6000abcd", second.getId());
+        assertEquals(1599990000000L, second.getUpdatedInMilliseconds());
+    }
+
+    @Test
+    public void extractFeaturesFromJson_keepsFeaturesWithoutId() throws IOException {
+        Earthquake third = QueryUtils.extractFeaturesFromJson(
+                readFixture("usgs_query_response.geojson")).get(2);
+        assertNull(third.getId());
+        assertEquals("South of the Fiji Islands", third.getPlace());
+        assertEquals(1599980500000L, third.getUpdatedInMilliseconds());
+    }
+
+    @Test
+    public void extractFeaturesFromJson_returnsNullWithoutResponse() {
+        assertNull(QueryUtils.extractFeaturesFromJson(null));
+        assertNull(QueryUtils.extractFeaturesFromJson(""));
+    }
+
+    @Test
+    public void extractFeaturesFromJson_returnsNullForInvalidResponse() throws IOException {
+        assertNull(QueryUtils.extractFeaturesFromJson("<html>captive portal</html>"));
+        assertNull(QueryUtils.extractFeaturesFromJson("{\"type\":\"FeatureCollection\"}"));
+        // A feature without magnitude
+        assertNull(QueryUtils.extractFeaturesFromJson(
+                readFixture("usgs_query_response.geojson").replace("\"mag\"", "\"magnitude\"")));
+    }
+
+    private static String readFixture(String name) throws IOException {
+        InputStream input = QueryUtilsTest.class.getClassLoader().getResourceAsStream(name);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                output.write(buffer, 0, length);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+}
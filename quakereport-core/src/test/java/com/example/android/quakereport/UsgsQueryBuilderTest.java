@@ -0,0 +1,38 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UsgsQueryBuilderTest {
+
+    @Test
+    public void buildEarthquakeQuery_matchesTheUriBuilderUrl() {
+        // The URL the activity built with android.net.Uri.Builder for the same settings
+        assertEquals("https://earthquake.usgs.gov/fdsnws/event/1/query?format=geojson"
+                        + "&eventtype=earthquake&limit=10&minmag=6&orderby=magnitude",
+                UsgsQueryBuilder.buildEarthquakeQuery(
+                        UsgsQueryBuilder.USGS_REQUEST_URL, "6", "magnitude"));
+        assertEquals("https://earthquake.usgs.gov/fdsnws/event/1/query?format=geojson"
+                        + "&eventtype=earthquake&limit=10&minmag=4.5&orderby=time",
+                UsgsQueryBuilder.buildEarthquakeQuery(
+                        UsgsQueryBuilder.USGS_REQUEST_URL, "4.5", "time"));
+    }
+
+    @Test
+    public void appendQueryParameter_encodesLikeUri() {
+        // Uri.encode keeps letters, digits and "_-!.~'()*" and writes a space as %20
+        assertEquals("http://localhost/query?a=1%202&b=x%2By%26z%3D&c=_-!.~'()*&d=%C3%A9",
+                new UsgsQueryBuilder("http://localhost/query")
+                        .appendQueryParameter("a", "1 2")
+                        .appendQueryParameter("b", "x+y&z=")
+                        .appendQueryParameter("c", "_-!.~'()*")
+                        .appendQueryParameter("d", "\u00e9")
+                        .build());
+    }
+
+    @Test
+    public void build_withoutParameters() {
+        assertEquals(UsgsQueryBuilder.USGS_REQUEST_URL, new UsgsQueryBuilder().build());
+    }
+}